@@ -16,6 +16,7 @@ function process_block_extension(obj) {
         align = (attrs['$[]']("align")),
         type = (attrs['$[]']("type")),
         role = (attrs['$[]']("role")),
+        format = (attrs['$[]']("format")),
         link = (attrs['$[]']("link")),
         float = (attrs['$[]']("float")),
         options = (attrs['$[]']("options")),
@@ -33,12 +34,13 @@ function process_block_extension(obj) {
     var normalName = name.toLowerCase();
 
     var command = normalName;
+    var line = sourceLine(parent, reader);
     var content = reader.$read();
 
     if (filename != "") {
         target = parent.$image_uri(filename);
     } else {
-        target = cachedImageUri(content);
+        target = cachedImageUri(content, format);
         var host = ((typeof location) != "undefined") ? "http://" + location.host : "";
         filename = host + target;
     }
@@ -63,6 +65,7 @@ function process_block_extension(obj) {
     postMessage(JSON.stringify({
         type: "afx",
         func: command,
+        line: line,
         parameters: parameters
     }));
 
@@ -17,6 +17,7 @@ function process_block_macro_extension(obj) {
         type = (attrs['$[]']("type")),
         cache = (attrs['$[]']("cache")),
         role = (attrs['$[]']("role")),
+        format = (attrs['$[]']("format")),
         link = (attrs['$[]']("link")),
         float = (attrs['$[]']("float")),
         imagesdir = parent.$document().$attr('imagesdir', '');
@@ -36,7 +37,7 @@ function process_block_macro_extension(obj) {
     if (filename != "") {
         target = parent.$image_uri(filename);
     } else {
-        target = cachedImageUri(content);
+        target = cachedImageUri(content, format);
         var host = ((typeof location) != "undefined") ? "http://" + location.host : "";
         filename = host + target;
     }
@@ -56,6 +57,7 @@ function process_block_macro_extension(obj) {
     postMessage(JSON.stringify({
         type: "afx",
         func: command,
+        line: sourceLine(parent, parent.$document().$reader()),
         parameters: parameters
     }));
 
@@ -56,6 +56,7 @@
 
                 if (cache != "enabled") {
 
+                    var line = sourceLine(parent, reader);
                     var parameters = [reader.$read(), imagesdir, parent.$image_uri(filename), chartType, opt].map(function (e) {
                         return e + "";
                     });
@@ -63,6 +64,7 @@
                     postMessage(JSON.stringify({
                         type: "afx",
                         func: "chartBuild",
+                        line: line,
                         parameters: parameters
                     }));
                     //afx.chartBuild();
@@ -150,6 +152,7 @@
                     postMessage(JSON.stringify({
                         type: "afx",
                         func: "chartBuildFromCsv",
+                        line: sourceLine(parent, parent.$document().$reader()),
                         parameters: parameters
                     }));
                 }
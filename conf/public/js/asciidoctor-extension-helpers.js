@@ -1,3 +1,24 @@
+// Document line where the block being converted starts, blocks converted separately count their lines from 1
+var sourceLineOffset = 0;
+
+// Source line of the processed node, used to render diagrams near the viewport first. -1 when unknown
+function sourceLine(parent, reader) {
+    var line = -1;
+    try {
+        if (reader && reader.$lineno) {
+            line = reader.$lineno();
+        } else if (parent.$source_location) {
+            var location = parent.$source_location();
+            if (location && !location["$nil?"]()) {
+                line = location.lineno;
+            }
+        }
+    } catch (e) {
+        // unknown
+    }
+    return line < 0 ? -1 : line + sourceLineOffset;
+}
+
 function latexmathWrap(content) {
     return "\\[\n" + content + "\n\\]";
 }
@@ -0,0 +1,59 @@
+function shiftDataLines(element, delta) {
+
+    if (delta === 0) {
+        return;
+    }
+
+    element.querySelectorAll("[class*='data-line-']").forEach(function (node) {
+        node.className = node.className.replace(/data-line-(\d+)/g, function (match, line) {
+            return "data-line-" + (parseInt(line, 10) + delta);
+        });
+    });
+}
+
+// Reuses rendered blocks already in the placeholder, returns false if some block content is missing
+function replaceBlocks(placeholder, order, contents) {
+
+    var existing = {};
+    Array.prototype.slice.call(placeholder.children).forEach(function (node) {
+        if (node.classList.contains("afx-block")) {
+            existing[node.getAttribute("data-block")] = node;
+        }
+    });
+
+    var blocks = [];
+    for (var i = 0; i < order.length; i++) {
+        var item = order[i];
+        var block = existing[item.key];
+
+        if (block) {
+            delete existing[item.key];
+            shiftDataLines(block, item.offset - parseInt(block.getAttribute("data-offset"), 10));
+        } else if (item.key in contents) {
+            block = document.createElement("div");
+            block.className = "afx-block";
+            block.setAttribute("data-block", item.key);
+            $(block).html(contents[item.key]);
+            shiftDataLines(block, item.offset);
+        } else {
+            return false;
+        }
+
+        block.setAttribute("data-offset", item.offset);
+        blocks.push(block);
+    }
+
+    Array.prototype.slice.call(placeholder.childNodes).forEach(function (node) {
+        if (blocks.indexOf(node) < 0) {
+            placeholder.removeChild(node);
+        }
+    });
+
+    blocks.forEach(function (block, index) {
+        if (placeholder.childNodes[index] !== block) {
+            placeholder.insertBefore(block, placeholder.childNodes[index] || null);
+        }
+    });
+
+    return true;
+}
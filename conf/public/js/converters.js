@@ -1,33 +1,141 @@
-var myWorker = new Worker("/afx/worker/js/?p=js/webworker.js");
 var asciidoctor= Asciidoctor({runtime: {platform: 'browser'}});
-myWorker.onmessage = function (e) {
 
-    var data = (typeof e.data) == "string" ? JSON.parse(e.data) : e.data;
+// First worker is the preview lane, other workers share the remaining conversions
+var workerPool = [];
+var previewFunctions = ["convertAsciidoc", "convertBlocks"];
+var taskWorkers = {};
 
-    if (data.type == "log") {
+function createWorker() {
 
-        var logLevel = data.level;
+    var worker = new Worker("/afx/worker/js/?p=js/webworker.js");
+    worker.queue = [];
+    worker.current = null;
 
-        if (logLevel) {
-            if (logLevel == "error") {
-                afx.completeWebWorkerExceptionally(data.taskId);
+    worker.onmessage = function (e) {
+
+        var data = (typeof e.data) == "string" ? JSON.parse(e.data) : e.data;
+
+        if (data.type == "log") {
+
+            var logLevel = data.level;
+
+            if (logLevel) {
+                if (logLevel == "error") {
+                    releaseTask(data.taskId);
+                    afx.completeWebWorkerExceptionally(data.taskId);
+                }
+
+                afx[logLevel].call(afx, JSON.stringify(data.message));
+            }
+        }
+        else if (data.type == "afx") {
+            if (data.func == "completeWebWorker") {
+                releaseTask(data.parameters[0]);
             }
+            if ((typeof data.line) == "number") {
+                afx.renderLine(data.line);
+            }
+            afx[data.func].apply(afx, data.parameters);
+        }
+
+    };
+
+    worker.onerror = function (e) {
+        var data = (typeof e) == "string" ? e : e.message;
+        afx["error"].call(afx, data);
+    };
 
-            afx[logLevel].call(afx, JSON.stringify(data.message));
+    worker.postMessage();
+
+    return worker;
+}
+
+function initWorkers(size) {
+    while (workerPool.length < Math.max(size, 1)) {
+        workerPool.push(createWorker());
+    }
+}
+
+function pendingCount(worker) {
+    return worker.queue.length + (worker.current ? 1 : 0);
+}
+
+function selectWorker(func) {
+
+    if (workerPool.length == 1 || previewFunctions.indexOf(func) >= 0) {
+        return workerPool[0];
+    }
+
+    var selected = workerPool[1];
+    for (var i = 2; i < workerPool.length; i++) {
+        if (pendingCount(workerPool[i]) < pendingCount(selected)) {
+            selected = workerPool[i];
         }
     }
-    else if (data.type == "afx") {
-        afx[data.func].apply(afx, data.parameters);
+
+    return selected;
+}
+
+// Tasks are kept here until their worker is idle, so that queued tasks can still be dropped
+function pumpWorker(worker) {
+    if (worker.current || worker.queue.length == 0) {
+        return;
     }
 
-};
+    var message = worker.queue.shift();
+    worker.current = message.taskId;
+    worker.postMessage(JSON.stringify(message));
+}
+
+function releaseTask(taskId) {
+    var worker = taskWorkers[taskId];
+    if (!worker) {
+        return;
+    }
 
-myWorker.onerror = function (e) {
-    var data = (typeof e) == "string" ? e : e.message;
-    afx["error"].call(afx, data);
-};
+    delete taskWorkers[taskId];
+
+    if (worker.current == taskId) {
+        worker.current = null;
+        pumpWorker(worker);
+    }
+}
+
+// Drops a queued task, a running task is only stopped by restarting its worker when terminate is true
+function cancelTask(taskId, terminate) {
+    var worker = taskWorkers[taskId];
+    if (!worker) {
+        return;
+    }
+
+    delete taskWorkers[taskId];
+
+    worker.queue = worker.queue.filter(function (message) {
+        return message.taskId != taskId;
+    });
+
+    if (worker.current != taskId) {
+        return;
+    }
 
-myWorker.postMessage();
+    worker.current = null;
+
+    if (terminate) {
+        worker.terminate();
+
+        var restarted = createWorker();
+        restarted.queue = worker.queue;
+        restarted.queue.forEach(function (message) {
+            taskWorkers[message.taskId] = restarted;
+        });
+        workerPool[workerPool.indexOf(worker)] = restarted;
+        worker = restarted;
+    }
+
+    pumpWorker(worker);
+}
+
+initWorkers(1);
 
 function getOption(options) {
     return Opal.hash(JSON.parse(options));
@@ -43,13 +151,25 @@ function convertBackend(taskId, content, options) {
         options: options
     };
 
-    myWorker.postMessage(JSON.stringify(message));
+    var worker = selectWorker(message.func);
+    taskWorkers[taskId] = worker;
+    worker.queue.push(message);
+    pumpWorker(worker);
 }
 
 function convertAsciidoc(taskId, content, options) {
     convertBackend(taskId, content, options);
 }
 
+function convertBlocks(taskId, content, options) {
+    convertBackend(taskId, content, options);
+}
+
+// Refreshes the outline of a document whose rendered content is taken from cache
+function fillOutlinesLater(taskId, content, options) {
+    convertBackend(taskId, content, options);
+}
+
 function convertOdf(taskId, content, options) {
     var doc = asciidoctor.$load(content, getOption(options));
     var rendered = doc.$convert();
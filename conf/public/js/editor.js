@@ -43,8 +43,20 @@ function updateMarkupScroll(row) {
     lastEditorRow = row;
 };
 
+var viewportAction = new BufferedAction();
+function updateViewport() {
+
+    viewportAction.buff(function () {
+        var cursorRow = editor.getCursorPosition().row;
+        afx.updateViewport(editor.getFirstVisibleRow() + 1, editor.getLastVisibleRow() + 1, cursorRow + 1);
+    }, 100);
+
+}
+
 editor.getSession().on('changeScrollTop', function (scroll) {
 
+    updateViewport();
+
     var maxTop = editor.renderer.layerConfig.maxHeight - editor.renderer.$size.scrollerHeight + editor.renderer.scrollMargin.bottom;
     var scrollTop = editor.getSession().getScrollTop();
 
@@ -96,6 +108,8 @@ editor.getSession().selection.on('changeCursor', function (e) {
 
     updateStatusBox();
 
+    updateViewport();
+
     updateMarkupScroll(row);
 
 });
@@ -279,7 +293,7 @@ function initializeEmmet(mode) {
 var rerenderAction = new BufferedAction();
 function rerender() {
     rerenderAction.buff(function () {
-        afx.textListener(editor.getValue(), editorMode(), editorPane.getPath());
+        afx.rerenderListener(editor.getValue(), editorMode(), editorPane.getPath());
         updateStatusBox();
     }, 100);
     if (markers.length == 0) {
@@ -11,6 +11,7 @@ start uglifyjs --screw-ie8 -c -o asciidoctor-deck.js -- asciidoctor-deck.js
 start uglifyjs --screw-ie8 -c -o outliner.js -- outliner.js
 start uglifyjs --screw-ie8 -c -o webworker-converters.js -- webworker-converters.js
 start uglifyjs --screw-ie8 -c -o editor.js -- editor.js
+start uglifyjs --screw-ie8 -c -o block-patch.js -- block-patch.js
 start uglifyjs --screw-ie8 -c -o preview.js -- preview.js
 start uglifyjs --screw-ie8 -c -o to-markdown.js -- to-markdown.js
 start uglifyjs --screw-ie8 -c -o reveal-extensions.js -- reveal-extensions.js
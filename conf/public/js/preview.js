@@ -38,6 +38,60 @@ function refreshUI(data) {
 
     $placeholder.html(data);
 
+    highlightSources();
+}
+
+// Replaces the changed top-level elements, returns false if the page does not hold the expected elements
+function patchUI(patch) {
+
+    patch = JSON.parse(patch);
+
+    var children = $placeholder.children();
+    if (children.length !== patch.expected) {
+        return false;
+    }
+
+    var removedNodes = children.slice(patch.start, patch.start + patch.removed);
+    var reference = children.eq(patch.start + patch.removed);
+
+    removedNodes.each(function (index) {
+        if (index < patch.html.length) {
+            patchNode(this, patch.html[index]);
+        } else {
+            $(this).remove();
+        }
+    });
+
+    var inserted = patch.html.slice(removedNodes.length).join("\n");
+    if (inserted) {
+        if (reference.length) {
+            reference.before(inserted);
+        } else {
+            $placeholder.append(inserted);
+        }
+    }
+
+    highlightSources();
+
+    return true;
+}
+
+// Applies the element changes with diffhtml, so that unchanged child nodes and images are kept
+function patchNode(node, html) {
+    if (node.querySelector("script, .hljs, .prettyprinted")) {
+        $(node).replaceWith(html);
+        return;
+    }
+
+    try {
+        delete node._tree;
+        node.outerDiffHTML = html;
+    } catch (e) {
+        $(node).replaceWith(html);
+    }
+}
+
+function highlightSources() {
     sourceHighlightAction.buff(function () {
         document.querySelectorAll('pre code').forEach((block) => {
             hljs.highlightBlock(block);
@@ -45,7 +99,18 @@ function refreshUI(data) {
 
         prettyPrint();
     }, 1000);
+}
+
+// Reuses rendered blocks already in the page, returns false if some block content is missing
+function patchBlocks(order, contents) {
+
+    if (!replaceBlocks($placeholder[0], JSON.parse(order), JSON.parse(contents))) {
+        return false;
+    }
+
+    highlightSources();
 
+    return true;
 }
 
 alert("PREVIEW_LOADED");
\ No newline at end of file
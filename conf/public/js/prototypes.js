@@ -1,7 +1,8 @@
-function cachedImageUri(content) {
+function cachedImageUri(content, format) {
     var md5 = CryptoJS.MD5(content);
+    var extension = format == "svg" ? ".svg" : ".png";
 
-    return "/afx/cache/" + md5 + ".png";
+    return "/afx/cache/" + md5 + extension;
 };
 
 function lineNumber(ifExist) {
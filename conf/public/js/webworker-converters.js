@@ -19,6 +19,44 @@ function convertBackend(taskId, content, options) {
     }, 1000);
 }
 
+function convertBlocks(taskId, content, options) {
+
+    var request = JSON.parse(content);
+    var rendered = request.blocks.map(function (block, index) {
+        sourceLineOffset = request.lineOffsets[index];
+        try {
+            return asciidoctor.$load(block, getOption(options)).$convert();
+        } finally {
+            sourceLineOffset = 0;
+        }
+    });
+
+    self.postMessage(JSON.stringify({
+        type: "afx",
+        func: "completeWebWorker",
+        parameters: [taskId, JSON.stringify(rendered), "html5", "article"]
+    }));
+
+    fillOutAction.buff(function () {
+        fillOutlines(asciidoctor.$load(request.document, getOption(options)));
+    }, 1000);
+}
+
+function fillOutlinesLater(taskId, content, options) {
+
+    var doc = asciidoctor.$load(content, getOption(options));
+
+    self.postMessage(JSON.stringify({
+        type: "afx",
+        func: "completeWebWorker",
+        parameters: [taskId, "", doc.$backend(), doc.doctype]
+    }));
+
+    fillOutAction.buff(function () {
+        fillOutlines(doc);
+    }, 1000);
+}
+
 function convertAsciidoc(taskId, content, options) {
 
     convertBackend(taskId, content, options);
@@ -6,13 +6,27 @@ import com.kodedu.config.HtmlConfigBean;
 import com.kodedu.config.PreviewConfigBean;
 import com.kodedu.controller.ApplicationController;
 import com.kodedu.engine.AsciidocWebkitConverter;
+import com.kodedu.engine.IncrementalResult;
+import com.kodedu.helper.HtmlHelper;
 import com.kodedu.other.Current;
 import com.kodedu.service.DirectoryService;
 import com.kodedu.service.ThreadService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObjectBuilder;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Created by usta on 09.04.2015.
  */
@@ -33,6 +47,22 @@ public class HtmlPane extends ViewPanel {
     private final AsciidocWebkitConverter asciidocWebkitConverter;
     private final DirectoryService directoryService;
 
+    private final Logger logger = LoggerFactory.getLogger(HtmlPane.class);
+
+    @Value("${application.preview.patch-ratio}")
+    private double patchRatio;
+
+    // Keys of the blocks currently in the preview page, only accessed in FX thread
+    private final Set<String> displayedBlocks = new HashSet<>();
+
+    // Top-level elements currently in the preview page, only accessed in FX thread
+    private List<String> displayedElements;
+
+    private final LongAdder patchCount = new LongAdder();
+    private final LongAdder fullRefreshCount = new LongAdder();
+    private final LongAdder bridgePayload = new LongAdder();
+    private final LongAdder refreshNanos = new LongAdder();
+
     @Autowired
     public HtmlPane(ThreadService threadService, ApplicationController controller, Current current, PreviewConfigBean previewConfigBean, DocbookConfigBean docbookConfigBean, HtmlConfigBean htmlConfigBean, EditorConfigBean editorConfigBean, AsciidocWebkitConverter asciidocWebkitConverter, DirectoryService directoryService) {
         super(threadService, controller, current, editorConfigBean);
@@ -47,13 +77,130 @@ public class HtmlPane extends ViewPanel {
 
     @Override
     public void load(String url) {
+        threadService.runActionLater(() -> {
+            displayedBlocks.clear();
+            displayedElements = null;
+        });
         super.load(url);
     }
 
     public void refreshUI(String content) {
         threadService.runActionLater(() -> {
-            this.setMember("lastRenderedValue", content);
-            webEngine().executeScript("refreshUI(lastRenderedValue)");
+            long start = System.nanoTime();
+            displayedBlocks.clear();
+
+            List<String> elements = content.startsWith("<!DOCTYPE html>") ? null : HtmlHelper.splitTopLevelElements(content);
+            int payload = patchUI(displayedElements, elements);
+
+            if (payload < 0) {
+                this.setMember("lastRenderedValue", content);
+                webEngine().executeScript("refreshUI(lastRenderedValue)");
+                payload = content.length();
+                fullRefreshCount.increment();
+            } else {
+                patchCount.increment();
+            }
+
+            displayedElements = elements;
+
+            long elapsed = System.nanoTime() - start;
+            bridgePayload.add(payload);
+            refreshNanos.add(elapsed);
+            logger.debug("Preview refreshed with {} chars in {} ms", payload, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        });
+    }
+
+    /**
+     * Replaces only the changed range of top-level elements in the preview page
+     *
+     * @return sent payload length, or -1 if a full refresh is needed
+     */
+    private int patchUI(List<String> oldElements, List<String> newElements) {
+        if (Objects.isNull(oldElements) || Objects.isNull(newElements)) {
+            return -1;
+        }
+
+        int oldSize = oldElements.size();
+        int newSize = newElements.size();
+        int prefix = 0;
+        while (prefix < oldSize && prefix < newSize && oldElements.get(prefix).equals(newElements.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < oldSize - prefix && suffix < newSize - prefix
+                && oldElements.get(oldSize - 1 - suffix).equals(newElements.get(newSize - 1 - suffix))) {
+            suffix++;
+        }
+
+        int removed = oldSize - prefix - suffix;
+        List<String> inserted = newElements.subList(prefix, newSize - suffix);
+
+        if (removed + inserted.size() > patchRatio * Math.max(oldSize, newSize)) {
+            return -1;
+        }
+
+        JsonArrayBuilder html = Json.createArrayBuilder();
+        inserted.forEach(html::add);
+        String patch = Json.createObjectBuilder()
+                .add("expected", oldSize)
+                .add("start", prefix)
+                .add("removed", removed)
+                .add("html", html)
+                .build()
+                .toString();
+
+        this.setMember("lastPatch", patch);
+        Object patched = webEngine().executeScript("patchUI(lastPatch)");
+
+        return Boolean.TRUE.equals(patched) ? patch.length() : -1;
+    }
+
+    public long getPatchCount() {
+        return patchCount.sum();
+    }
+
+    public long getFullRefreshCount() {
+        return fullRefreshCount.sum();
+    }
+
+    // Total chars sent to the preview page by refreshUI
+    public long getBridgePayload() {
+        return bridgePayload.sum();
+    }
+
+    // Total time spent in refreshUI in the FX thread
+    public long getRefreshNanos() {
+        return refreshNanos.sum();
+    }
+
+    public void patchBlocks(IncrementalResult result) {
+        threadService.runActionLater(() -> {
+            JsonArrayBuilder order = Json.createArrayBuilder();
+            JsonObjectBuilder contents = Json.createObjectBuilder();
+            JsonObjectBuilder allContents = Json.createObjectBuilder();
+
+            for (IncrementalResult.RenderedBlock block : result.getBlocks()) {
+                order.add(Json.createObjectBuilder()
+                        .add("key", block.getKey())
+                        .add("offset", block.getOffset()));
+                if (!displayedBlocks.contains(block.getKey())) {
+                    contents.add(block.getKey(), block.getHtml());
+                }
+                allContents.add(block.getKey(), block.getHtml());
+            }
+
+            this.setMember("lastBlockOrder", order.build().toString());
+            this.setMember("lastBlockContents", contents.build().toString());
+            Object patched = webEngine().executeScript("patchBlocks(lastBlockOrder, lastBlockContents)");
+
+            if (!Boolean.TRUE.equals(patched)) {
+                this.setMember("lastBlockContents", allContents.build().toString());
+                webEngine().executeScript("patchBlocks(lastBlockOrder, lastBlockContents)");
+            }
+
+            displayedBlocks.clear();
+            displayedElements = null;
+            result.getBlocks().forEach(block -> displayedBlocks.add(block.getKey()));
         });
     }
 
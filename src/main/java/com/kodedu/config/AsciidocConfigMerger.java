@@ -1,17 +1,18 @@
 package com.kodedu.config;
 
 import com.kodedu.controller.TextChangeEvent;
+import com.kodedu.other.LRUMap;
 import javafx.collections.ObservableList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
 
 import javax.json.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -30,16 +31,60 @@ public class AsciidocConfigMerger {
 
     public final Pattern attributePattern = Pattern.compile("^:(!*)(?<key>.*)(!*):(.*)$", Pattern.MULTILINE);
 
+    // Merged configs by config bean, bean version, document path and document attribute lines
+    private final Map<String, JsonObject> mergedConfigs = Collections.synchronizedMap(new LRUMap<>(32, true));
+
     @Autowired
     public AsciidocConfigMerger(EditorConfigBean editorConfigBean) {
         this.editorConfigBean = editorConfigBean;
     }
 
-    public JsonObject updateConfig(TextChangeEvent event, JsonObject config) {
-        try {
+    public JsonObject updateConfig(TextChangeEvent event, AsciidoctorConfigBase configBean) {
+
+        List<String> attributeLines = findAttributeLines(event.getText());
 
-            String asciidoc = event.getText();
-            Matcher matcher = attributePattern.matcher(asciidoc);
+        String cacheKey = String.join("|",
+                configBean.getClass().getName(),
+                String.valueOf(configBean.getVersion()),
+                String.valueOf(event.getPath()),
+                String.valueOf(editorConfigBean.getDefaultLanguage()),
+                DigestUtils.md5DigestAsHex(String.join("\n", attributeLines).getBytes(StandardCharsets.UTF_8)));
+
+        JsonObject mergedConfig = mergedConfigs.get(cacheKey);
+
+        if (Objects.isNull(mergedConfig)) {
+            mergedConfig = mergeConfig(event.getPath(), attributeLines, configBean.getJSON());
+            mergedConfigs.put(cacheKey, mergedConfig);
+        }
+
+        return mergedConfig;
+    }
+
+    /**
+     * Collects attribute entry lines, which are the only lines starting with a colon
+     * among the header and body lines the merge depends on
+     */
+    private List<String> findAttributeLines(String asciidoc) {
+        List<String> attributeLines = new ArrayList<>();
+        int length = asciidoc.length();
+        int start = 0;
+
+        while (start < length) {
+            int end = asciidoc.indexOf('\n', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (asciidoc.charAt(start) == ':') {
+                attributeLines.add(asciidoc.substring(start, end));
+            }
+            start = end + 1;
+        }
+
+        return attributeLines;
+    }
+
+    private JsonObject mergeConfig(Path path, List<String> attributeLines, JsonObject config) {
+        try {
 
             JsonObject currentAttributes = config.getJsonObject("attributes");
 
@@ -57,10 +102,12 @@ public class AsciidocConfigMerger {
             }
 
             // find document attributes
-            List<String> foundKeys = new LinkedList<>();
-            while (matcher.find()) {
-                String key = matcher.group("key");
-                foundKeys.add(key);
+            Set<String> foundKeys = new HashSet<>();
+            for (String attributeLine : attributeLines) {
+                Matcher matcher = attributePattern.matcher(attributeLine);
+                if (matcher.find()) {
+                    foundKeys.add(matcher.group("key"));
+                }
             }
 
             // add document attributes
@@ -90,7 +137,6 @@ public class AsciidocConfigMerger {
 
             }
 
-            Path path = event.getPath();
             if (path != null) {
                 if (!foundKeys.contains("docdir")) {
                     finalAttrBuilder.add("docdir=" + path.getParent());
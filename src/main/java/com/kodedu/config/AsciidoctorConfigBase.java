@@ -11,8 +11,10 @@ import com.kodedu.config.factory.TableFactory;
 import com.kodedu.controller.ApplicationController;
 import com.kodedu.helper.IOHelper;
 import com.kodedu.service.ThreadService;
+import javafx.beans.InvalidationListener;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.geometry.Insets;
@@ -29,6 +31,7 @@ import javax.json.*;
 import java.io.Reader;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by usta on 17.07.2015.
@@ -59,10 +62,33 @@ public abstract class AsciidoctorConfigBase extends ConfigurationBase {
     private final Button loadButton = new Button("Load");
     private final Label infoLabel = new Label();
 
+    // Incremented on every change of the converter options
+    private final AtomicLong version = new AtomicLong();
+    private final InvalidationListener versionListener = observable -> version.incrementAndGet();
+
+    private JsonObject cachedJSON;
+    private long cachedVersion = -1;
+
     public AsciidoctorConfigBase(ApplicationController controller, ThreadService threadService) {
         super(controller, threadService);
         this.controller = controller;
         this.threadService = threadService;
+
+        Arrays.asList(jsPlatform, safe, sourcemap, header_footer, backend, attributes)
+                .forEach(property -> property.addListener(versionListener));
+
+        attributes.addListener((ListChangeListener<AttributesTable>) change -> {
+            while (change.next()) {
+                for (AttributesTable attribute : change.getAddedSubList()) {
+                    attribute.attributeProperty().addListener(versionListener);
+                    attribute.valueProperty().addListener(versionListener);
+                }
+            }
+        });
+    }
+
+    public long getVersion() {
+        return version.get();
     }
 
     public String getBackend() {
@@ -222,7 +248,16 @@ public abstract class AsciidoctorConfigBase extends ConfigurationBase {
     }
 
     @Override
-    public JsonObject getJSON() {
+    public synchronized JsonObject getJSON() {
+        long currentVersion = version.get();
+        if (Objects.isNull(cachedJSON) || cachedVersion != currentVersion) {
+            cachedJSON = buildJSON();
+            cachedVersion = currentVersion;
+        }
+        return cachedJSON;
+    }
+
+    private JsonObject buildJSON() {
         JsonObjectBuilder attributesObject = Json.createObjectBuilder();
 
         ObservableList<AttributesTable> attributes = getAttributes();
@@ -9,6 +9,8 @@ import com.kodedu.component.*;
 import com.kodedu.config.*;
 import com.kodedu.engine.AsciidocConverterProvider;
 import com.kodedu.engine.AsciidocWebkitConverter;
+import com.kodedu.engine.IncrementalConverter;
+import com.kodedu.engine.IncrementalResult;
 import com.kodedu.helper.IOHelper;
 import com.kodedu.keyboard.KeyHelper;
 import com.kodedu.logging.MyLog;
@@ -22,11 +24,17 @@ import com.kodedu.service.convert.ebook.EpubConverter;
 import com.kodedu.service.convert.ebook.MobiConverter;
 import com.kodedu.service.convert.html.HtmlBookConverter;
 import com.kodedu.service.convert.slide.SlideConverter;
+import com.kodedu.service.cache.DiagramCacheService;
+import com.kodedu.service.cache.StylesheetCacheService;
+import com.kodedu.service.extension.DiagramSchedulerService;
 import com.kodedu.service.extension.MathJaxService;
 import com.kodedu.service.extension.MermaidService;
 import com.kodedu.service.extension.PlantUmlService;
 import com.kodedu.service.extension.TreeService;
+import com.kodedu.service.extension.chart.ChartBuilderService;
 import com.kodedu.service.extension.chart.ChartProvider;
+import com.kodedu.service.extension.chart.ChartSeries;
+import com.kodedu.service.extension.chart.ChartSeriesService;
 import com.kodedu.service.shortcut.ShortcutProvider;
 import com.kodedu.service.table.AsciidocTableController;
 import com.kodedu.service.ui.FileBrowseService;
@@ -80,6 +88,7 @@ import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 import org.springframework.web.util.UriComponentsBuilder;
@@ -102,10 +111,8 @@ import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -246,6 +253,15 @@ public class ApplicationController extends TextWebSocketHandler implements Initi
     @Autowired
     private MathJaxService mathJaxService;
 
+    @Autowired
+    private DiagramSchedulerService diagramScheduler;
+
+    @Autowired
+    private DiagramCacheService diagramCacheService;
+
+    // Source line of the next extension call, set by converters.js right before it
+    private int renderLine = -1;
+
     @Autowired
     private DocBookConverter docBookConverter;
 
@@ -298,6 +314,12 @@ public class ApplicationController extends TextWebSocketHandler implements Initi
     @Autowired
     private ChartProvider chartProvider;
 
+    @Autowired
+    private ChartSeriesService chartSeriesService;
+
+    @Autowired
+    private StylesheetCacheService stylesheetCacheService;
+
     @Autowired
     private DictionaryService dictionaryService;
 
@@ -308,7 +330,6 @@ public class ApplicationController extends TextWebSocketHandler implements Initi
     private EventService eventService;
 
     private Stage stage;
-    private List<WebSocketSession> sessionList = new ArrayList<>();
     private Scene scene;
     private AnchorPane asciidocTableAnchor;
     private Stage asciidocTableStage;
@@ -355,6 +376,15 @@ public class ApplicationController extends TextWebSocketHandler implements Initi
     @Autowired
     private AsciidocConverterProvider converterProvider;
 
+    @Autowired
+    private IncrementalConverter incrementalConverter;
+
+    @Autowired
+    private RenderScheduler renderScheduler;
+
+    @Autowired
+    private WebSocketBroadcaster webSocketBroadcaster;
+
     @Value("${application.worker.url}")
     private String workerUrl;
 
@@ -480,22 +510,47 @@ public class ApplicationController extends TextWebSocketHandler implements Initi
         });
     }
 
+    @WebkitCall(from = "converters")
+    public void renderLine(int line) {
+        renderLine = line;
+    }
+
+    private int takeRenderLine() {
+        int line = renderLine;
+        renderLine = -1;
+        return line;
+    }
+
+    @WebkitCall(from = "editor")
+    public void updateViewport(int firstLine, int lastLine, int cursorLine) {
+        diagramScheduler.updateViewport(firstLine, lastLine, cursorLine);
+    }
+
     @WebkitCall(from = "asciidoctor-math")
     public void math(String formula, String type, String imagesDir, String imageTarget, String nodename) {
 
-        mathJaxService.processFormula(formula, imagesDir, imageTarget);
+        if (isNull(imageTarget)) {
+            return;
+        }
+
+        String hash = diagramCacheService.hash("math", imageTarget, formula);
+        diagramScheduler.schedule("math", imageTarget, hash, takeRenderLine(), () -> {
+            return mathJaxService.processFormula(formula, imagesDir, imageTarget);
+        });
     }
 
     @WebkitCall(from = "asciidoctor-mermaid")
     public void mermaid(String content, String type, String imagesDir, String imageTarget, String nodename) {
-        threadService.runActionLater(() -> {
-            mermaidService.createMermaidDiagram(content, type, imagesDir, imageTarget, nodename, false);
+
+        String hash = diagramCacheService.hash("mermaid", imageTarget, type, content);
+        diagramScheduler.schedule("mermaid", imageTarget, hash, takeRenderLine(), () -> {
+            return mermaidService.createMermaidDiagram(content, type, imagesDir, imageTarget, nodename, false);
         });
     }
 
     @WebkitCall(from = "mathjax.html")
-    public void snapshotFormula(String formula, String imagesDir, String imageTarget) {
-        mathJaxService.snapshotFormula(formula, imagesDir, imageTarget);
+    public void snapshotFormulas(String json) {
+        mathJaxService.snapshotFormulas(json);
     }
 
     private void convertMobi() {
@@ -551,15 +606,19 @@ public class ApplicationController extends TextWebSocketHandler implements Initi
 
     public void createFileTree(String tree, String type, String imagesDir, String imageTarget, String nodename) {
 
-        threadService.runTaskLater(() -> {
+        String hash = diagramCacheService.hash("tree", imageTarget, type, tree);
+        diagramScheduler.schedule("tree", imageTarget, hash, takeRenderLine(), () -> {
             treeService.createFileTree(tree, type, imagesDir, imageTarget, nodename);
+            return CompletableFuture.completedFuture(null);
         });
     }
 
     public void createHighlightFileTree(String tree, String type, String imagesDir, String imageTarget, String nodename) {
 
-        threadService.runTaskLater(() -> {
+        String hash = diagramCacheService.hash("highlight-tree", imageTarget, type, tree);
+        diagramScheduler.schedule("tree", imageTarget, hash, takeRenderLine(), () -> {
             treeService.createHighlightFileTree(tree, type, imagesDir, imageTarget, nodename);
+            return CompletableFuture.completedFuture(null);
         });
     }
 
@@ -624,15 +683,7 @@ public class ApplicationController extends TextWebSocketHandler implements Initi
 
         Arrays.asList(htmlPane, slidePane, liveReloadPane).forEach(viewPanel -> VBox.getVgrow(viewPanel));
 
-        threadService.runTaskLater(() -> {
-            while (true) {
-                try {
-                    renderLoop();
-                } catch (Exception e) {
-                    logger.error(e.getMessage(), e);
-                }
-            }
-        });
+        renderScheduler.start(this::render);
 
         progressBar.prefWidthProperty().bind(rightShowerHider.widthProperty());
 
@@ -653,6 +704,9 @@ public class ApplicationController extends TextWebSocketHandler implements Initi
         initializeLogViewer();
         initializeDoctypes();
 
+        stylesheetCacheService.warmUp(getConfigPath().resolve("docbook-config/fo-pdf.xsl"),
+                getConfigPath().resolve("docbook/epub3/chunk.xsl"));
+
         tooltipTimeFixService.fix();
 
         basicSearch.visibleProperty().bind(fileSystemView.focusedProperty().and(basicSearch.textProperty().isNotEmpty()));
@@ -857,6 +911,7 @@ public class ApplicationController extends TextWebSocketHandler implements Initi
         asciidocWebkitConverter.webEngine().setOnAlert(event -> {
             if ("WORKER_LOADED".equals(event.getData())) {
                 asciidocWebkitConverter.setMember("afx", this);
+                asciidocWebkitConverter.initWorkers();
                 htmlPane.load(String.format(previewUrl, port, directoryService.interPath()));
             }
         });
@@ -2180,12 +2235,31 @@ public class ApplicationController extends TextWebSocketHandler implements Initi
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        sessionList.add(session);
+        webSocketBroadcaster.register(session);
+        sendLastResult(session);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+        webSocketBroadcaster.unregister(session);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        // Sent by the browser when its page misses some blocks of a delta frame
+        if ("full".equals(message.getPayload())) {
+            sendLastResult(session);
+        }
+    }
+
+    private void sendLastResult(WebSocketSession session) {
+        ConverterResult result = lastConverterResult;
 
-        Optional
-                .ofNullable(lastConverterResult)
-                .map(ConverterResult::getRendered)
-                .ifPresent(this::sendOverWebSocket);
+        if (result instanceof IncrementalResult) {
+            webSocketBroadcaster.sendBlocks(session, (IncrementalResult) result);
+        } else if (Objects.nonNull(result) && Objects.nonNull(result.getRendered())) {
+            webSocketBroadcaster.send(session, result.getRendered());
+        }
     }
 
     @FXML
@@ -2259,8 +2333,9 @@ public class ApplicationController extends TextWebSocketHandler implements Initi
     @WebkitCall(from = "asciidoctor-uml")
     public void plantuml(String uml, String type, String imagesDir, String imageTarget, String nodename, String options) throws IOException {
 
-        threadService.runTaskLater(() -> {
-            plantUmlService.plantUml(uml, type, imagesDir, imageTarget, nodename, options);
+        String hash = diagramCacheService.hash("plantuml", imageTarget, type, uml, nodename, options);
+        diagramScheduler.schedule("plantuml", imageTarget, hash, takeRenderLine(), () -> {
+            return plantUmlService.plantUml(uml, type, imagesDir, imageTarget, nodename, options);
         });
     }
 
@@ -2277,27 +2352,46 @@ public class ApplicationController extends TextWebSocketHandler implements Initi
     @WebkitCall(from = "asciidoctor-chart")
     public void chartBuildFromCsv(String csvFile, String imagesDir, String imageTarget, String chartType, String options) {
 
-        threadService.runActionLater(() -> {
-            if (isNull(imageTarget) || isNull(chartType)) {
-                return;
+        if (isNull(imageTarget) || isNull(chartType)) {
+            return;
+        }
+
+        Optional<Path> root = current.currentPath().map(Path::getParent);
+        if (!root.isPresent()) {
+            return;
+        }
+
+        String hash = diagramCacheService.hash("chart-csv", imageTarget, csvFile, chartType, options);
+        diagramScheduler.schedule("chart", imageTarget, hash, takeRenderLine(), () -> {
+            ChartBuilderService chartBuilder = chartProvider.getProvider(chartType);
+            Path csvPath = root.get().resolve(csvFile);
+            Map<String, String> optMap = parseChartOptions(options);
+            optMap.put("csv-file", csvFile);
+
+            String source;
+            List<ChartSeries> seriesList;
+            try {
+                source = chartSeriesService.csvSource(csvPath);
+                seriesList = chartSeriesService.readCsv(csvPath);
+            } catch (IOException e) {
+                logger.error("Problem occured while reading chart data {}", csvPath, e);
+                return null;
             }
 
-            current.currentPath().map(Path::getParent).ifPresent(root -> {
-                threadService.runTaskLater(() -> {
-                    String csvContent = IOHelper.readFile(root.resolve(csvFile));
+            List<ChartSeries> chartData = chartBuilder.isDownsampled() ? chartSeriesService.downsample(seriesList, optMap) : seriesList;
 
-                    threadService.runActionLater(() -> {
-                        try {
-                            Map<String, String> optMap = parseChartOptions(options);
-                            optMap.put("csv-file", csvFile);
-                            chartProvider.getProvider(chartType).chartBuild(csvContent, imagesDir, imageTarget, optMap);
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            threadService.runActionLater(() -> {
+                try {
+                    chartBuilder.chartBuild(chartData, source, imagesDir, imageTarget, optMap);
 
-                        } catch (Exception e) {
-                            logger.info(e.getMessage(), e);
-                        }
-                    });
-                });
+                } catch (Exception e) {
+                    logger.info(e.getMessage(), e);
+                } finally {
+                    done.complete(null);
+                }
             });
+            return done;
         });
     }
 
@@ -2308,14 +2402,25 @@ public class ApplicationController extends TextWebSocketHandler implements Initi
             return;
         }
 
-        threadService.runActionLater(() -> {
-            try {
-                Map<String, String> optMap = parseChartOptions(options);
-                chartProvider.getProvider(chartType).chartBuild(chartContent, imagesDir, imageTarget, optMap);
+        String hash = diagramCacheService.hash("chart", imageTarget, chartContent, chartType, options);
+        diagramScheduler.schedule("chart", imageTarget, hash, takeRenderLine(), () -> {
+            ChartBuilderService chartBuilder = chartProvider.getProvider(chartType);
+            Map<String, String> optMap = parseChartOptions(options);
+            List<ChartSeries> seriesList = chartSeriesService.read(chartContent);
+            List<ChartSeries> chartData = chartBuilder.isDownsampled() ? chartSeriesService.downsample(seriesList, optMap) : seriesList;
 
-            } catch (Exception e) {
-                logger.info(e.getMessage(), e);
-            }
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            threadService.runActionLater(() -> {
+                try {
+                    chartBuilder.chartBuild(chartData, chartContent, imagesDir, imageTarget, optMap);
+
+                } catch (Exception e) {
+                    logger.info(e.getMessage(), e);
+                } finally {
+                    done.complete(null);
+                }
+            });
+            return done;
         });
     }
 
@@ -2366,21 +2471,11 @@ public class ApplicationController extends TextWebSocketHandler implements Initi
         });
     }
 
-    private volatile AtomicReference<TextChangeEvent> latestTextChangeEvent = new AtomicReference<>();
-    private Semaphore renderLoopSemaphore = new Semaphore(1);
-
-    private void renderLoop() throws InterruptedException {
-
-        renderLoopSemaphore.acquire();
+    // Returns false if the event wasn't rendered, so the scheduler doesn't take its input as rendered
+    private boolean render(TextChangeEvent textChangeEvent) {
 
         if (stopRendering.get()) {
-            return;
-        }
-
-        TextChangeEvent textChangeEvent = latestTextChangeEvent.get();
-
-        if (isNull(textChangeEvent)) {
-            return;
+            return false;
         }
 
         String text = textChangeEvent.getText();
@@ -2397,13 +2492,21 @@ public class ApplicationController extends TextWebSocketHandler implements Initi
                     setIncludeAsciidocResource(true);
                 }
 
+                if (!bookArticleHeader && incrementalConverter.isApplicable(textChangeEvent)) {
+                    try {
+                        return renderIncrementally(textChangeEvent);
+                    } catch (Exception e) {
+                        logger.debug("Problem occured while rendering blocks, rendering whole document", e);
+                    }
+                }
+
                 ConverterResult converterResult = converterProvider.get(previewConfigBean).convertAsciidoc(textChangeEvent);
 
                 setIncludeAsciidocResource(false);
 
                 if (lastConverterResult != null) {
                     if (converterResult.getDateTime().isBefore(lastConverterResult.getDateTime())) {
-                        return;
+                        return false;
                     }
                 }
 
@@ -2445,7 +2548,28 @@ public class ApplicationController extends TextWebSocketHandler implements Initi
         } catch (Exception e) {
             setIncludeAsciidocResource(false);
             logger.error("Problem occured while rendering content", e);
+            return false;
+        }
+
+        return true;
+    }
+
+    private boolean renderIncrementally(TextChangeEvent textChangeEvent) {
+
+        IncrementalResult result = incrementalConverter.convert(textChangeEvent);
+
+        if (lastConverterResult != null) {
+            if (result.getDateTime().isBefore(lastConverterResult.getDateTime())) {
+                return false;
+            }
         }
+
+        this.lastConverterResult = result;
+
+        htmlPane.patchBlocks(result);
+        webSocketBroadcaster.broadcastBlocks(result);
+        rightShowerHider.showNode(htmlPane);
+        return true;
     }
 
     private void updateRendered(String rendered) {
@@ -2454,31 +2578,19 @@ public class ApplicationController extends TextWebSocketHandler implements Initi
                 .ifPresent(html -> {
                     html = ContentFixes.decodeExtensionNames(html);
                     htmlPane.refreshUI(html);
-                    sendOverWebSocket(html);
+                    webSocketBroadcaster.broadcast(html);
                 });
 
     }
 
-    private void sendOverWebSocket(String html) {
-        if (sessionList.size() > 0) {
-            threadService.runTaskLater(() -> {
-                sessionList.stream().filter(WebSocketSession::isOpen).forEach(e -> {
-                    try {
-                        e.sendMessage(new TextMessage(html));
-                    } catch (Exception ex) {
-                        logger.error("Problem occured while sending content over WebSocket", ex);
-                    }
-                });
-            });
-        }
+    @WebkitCall(from = "editor")
+    public void textListener(String text, String mode, Path path) {
+        renderScheduler.submit(new TextChangeEvent(text, mode, path));
     }
 
     @WebkitCall(from = "editor")
-    public void textListener(String text, String mode, Path path) {
-        latestTextChangeEvent.set(new TextChangeEvent(text, mode, path));
-        if (renderLoopSemaphore.hasQueuedThreads()) {
-            renderLoopSemaphore.release();
-        }
+    public void rerenderListener(String text, String mode, Path path) {
+        renderScheduler.submitForced(new TextChangeEvent(text, mode, path));
     }
 
     @WebkitCall(from = "editor")
@@ -3149,7 +3261,7 @@ public class ApplicationController extends TextWebSocketHandler implements Initi
     }
 
     @WebkitCall(from = "asciidoctor-image-cache")
-    public Integer readImageCache(String target) {
+    public String readImageCache(String target) {
         return current.getCache().get(target);
     }
 
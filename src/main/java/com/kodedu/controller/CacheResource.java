@@ -18,6 +18,7 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -99,6 +100,20 @@ public class CacheResource {
             return;
         }
 
+        try {
+            processCachedResource(payload, cacheData, content);
+        } finally {
+            // The entry stays readable until the response is written, even if it is evicted meanwhile
+            cacheData.unpin();
+        }
+    }
+
+    private void processCachedResource(Payload payload, CacheData cacheData, boolean content) throws Exception {
+
+        String requestURI = payload.getRequestURI();
+        HttpServletResponse response = payload.getResponse();
+        HttpServletRequest request = payload.getRequest();
+
 //        File file = path.toFile();
 
         // Prepare some variables. The ETag is an unique identifier of the file.
@@ -319,7 +334,6 @@ public class CacheResource {
         } finally {
             // Gently close streams.
             close(output);
-            cacheData.closeStream();
         }
     }
 
@@ -387,28 +401,9 @@ public class CacheResource {
      */
     private void copy(CacheData input, OutputStream output, long start, long length)
             throws IOException {
-        byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
-        int read;
-
-        if (input.length() == length) {
-            // Write full range.
-            while ((read = input.read(buffer)) > 0) {
-                output.write(buffer, 0, read);
-            }
-        } else {
-            // Write partial range.
-            input.seek(start);
-            long toRead = length;
-
-            while ((read = input.read(buffer)) > 0) {
-                if ((toRead -= read) > 0) {
-                    output.write(buffer, 0, read);
-                } else {
-                    output.write(buffer, 0, (int) toRead + read);
-                    break;
-                }
-            }
-        }
+        // Cached data is read straight from its backing buffer, the servlet output stream only takes
+        // byte arrays, so the channel adapter still copies it through a small heap buffer of up to 8 KB
+        input.transferTo(start, length, Channels.newChannel(output));
     }
 
     /**
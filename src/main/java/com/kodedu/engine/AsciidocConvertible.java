@@ -3,6 +3,8 @@ package com.kodedu.engine;
 import com.kodedu.controller.TextChangeEvent;
 import com.kodedu.other.ConverterResult;
 
+import java.util.List;
+
 /**
  * Created by usta on 22.08.2015.
  */
@@ -14,6 +16,14 @@ public interface AsciidocConvertible {
 
     ConverterResult convertHtml(TextChangeEvent textChangeEvent);
 
+    /**
+     * Converts each block source on its own with the preview config of the given event
+     *
+     * @return rendered html5 of each block, in the same order
+     */
+    // Line offsets shift the source lines reported by the extensions of each block to document lines
+    List<String> convertBlocks(TextChangeEvent textChangeEvent, List<String> blocks, List<Integer> lineOffsets);
+
     void convertOdf(String asciidoc);
 
     void fillOutlines(Object doc);
@@ -17,14 +17,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonString;
+import java.io.StringReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import static com.kodedu.other.ContentFixes.encodeExtensionNames;
 
@@ -38,23 +46,44 @@ public class AsciidocWebkitConverter extends ViewPanel implements AsciidocConver
     private final DocbookConfigBean docbookConfigBean;
     private final HtmlConfigBean htmlConfigBean;
     private final AsciidocConfigMerger configMerger;
+    private final RenderResultCache renderResultCache;
 
     private static final Map<String, CompletableFuture<ConverterResult>> webWorkerTasks = new ConcurrentHashMap();
 
     @Value("${application.index.url}")
     private String indexUrl;
 
+    @Value("${application.worker.pool-size}")
+    private int workerPoolSize;
+
+    @Value("${application.worker.deadline.preview}")
+    private long previewDeadline;
+
+    @Value("${application.worker.deadline.html}")
+    private long htmlDeadline;
+
+    @Value("${application.worker.deadline.docbook}")
+    private long docbookDeadline;
+
+    private final LongAdder completedTasks = new LongAdder();
+    private final LongAdder timedOutTasks = new LongAdder();
+    private final LongAdder cancelledTasks = new LongAdder();
+    private final LongAdder failedTasks = new LongAdder();
+
+    private final AtomicReference<String> previewTaskId = new AtomicReference<>();
+
     private Logger logger = LoggerFactory.getLogger(AsciidocWebkitConverter.class);
     private final DirectoryService directoryService;
 
     @Autowired
-    public AsciidocWebkitConverter(ThreadService threadService, ApplicationController controller, Current current, EditorConfigBean editorConfigBean, PreviewConfigBean previewConfigBean, DocbookConfigBean docbookConfigBean, HtmlConfigBean htmlConfigBean, AsciidocConfigMerger configMerger, DirectoryService directoryService) {
+    public AsciidocWebkitConverter(ThreadService threadService, ApplicationController controller, Current current, EditorConfigBean editorConfigBean, PreviewConfigBean previewConfigBean, DocbookConfigBean docbookConfigBean, HtmlConfigBean htmlConfigBean, AsciidocConfigMerger configMerger, DirectoryService directoryService, RenderResultCache renderResultCache) {
         super(threadService, controller, current, editorConfigBean);
         this.previewConfigBean = previewConfigBean;
         this.docbookConfigBean = docbookConfigBean;
         this.htmlConfigBean = htmlConfigBean;
         this.configMerger = configMerger;
         this.directoryService = directoryService;
+        this.renderResultCache = renderResultCache;
     }
 
     public String getTemplate(String templateDir) {
@@ -70,6 +99,18 @@ public class AsciidocWebkitConverter extends ViewPanel implements AsciidocConver
         return template;
     }
 
+    /**
+     * Starts the converter web workers, the first one is reserved for the preview
+     */
+    public void initWorkers() {
+        int poolSize = Math.max(1, workerPoolSize);
+        try {
+            this.call("initWorkers", poolSize);
+        } catch (Exception e) {
+            logger.error("Problem occured while starting {} converter workers", poolSize, e);
+        }
+    }
+
     public JSObject getWindow() {
         return (JSObject) webEngine().executeScript("window");
     }
@@ -139,26 +180,112 @@ public class AsciidocWebkitConverter extends ViewPanel implements AsciidocConver
     }
 
     protected ConverterResult convert(String functionName, String asciidoc, JsonObject config) {
+
+        String encoded = encodeExtensionNames(asciidoc);
+
+        // Extension blocks create their images as a side effect of the conversion, so they are always converted
+        boolean cacheable = !"convertBlocks".equals(functionName)
+                && encoded.equals(asciidoc)
+                && renderResultCache.isCacheable(asciidoc);
+
+        if (!cacheable) {
+            return convertInWorker(functionName, encoded, config);
+        }
+
+        String cacheKey = renderResultCache.cacheKey(functionName, config, asciidoc);
+        Optional<ConverterResult> cachedResult = renderResultCache.get(cacheKey);
+
+        if (cachedResult.isPresent()) {
+            if (isPreviewFunction(functionName)) {
+                submitToWorker(UUID.randomUUID().toString(), "fillOutlinesLater", encoded, config.toString(), null);
+            }
+            return cachedResult.get();
+        }
+
+        ConverterResult result = convertInWorker(functionName, encoded, config);
+        renderResultCache.put(cacheKey, result);
+        return result;
+    }
+
+    private ConverterResult convertInWorker(String functionName, String asciidoc, JsonObject config) {
+
+        final String taskId = UUID.randomUUID().toString();
+        final long deadline = getDeadline(functionName);
+
+        if (isPreviewFunction(functionName)) {
+            // A newer preview render supersedes the one still waiting
+            Optional.ofNullable(previewTaskId.getAndSet(taskId))
+                    .ifPresent(superseded -> cancelTask(superseded, false));
+        }
+
         try {
-            asciidoc = encodeExtensionNames(asciidoc);
-            return convertContent(functionName, asciidoc, config).get(5, TimeUnit.SECONDS);
-        } catch (Exception e1) {
+            ConverterResult result = convertContent(taskId, functionName, asciidoc, config).get(deadline, TimeUnit.SECONDS);
+            completedTasks.increment();
+            return result;
+        } catch (TimeoutException e) {
+            timedOutTasks.increment();
+            cancelTask(taskId, true);
+            throw new RuntimeException(String.format("Task: %s is not completed in %d seconds", taskId, deadline), e);
+        } catch (CancellationException e) {
+            throw new RuntimeException(String.format("Task: %s is cancelled", taskId), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelTask(taskId, false);
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            failedTasks.increment();
+            throw new RuntimeException(e.getCause());
+        } finally {
+            previewTaskId.compareAndSet(taskId, null);
+            webWorkerTasks.remove(taskId);
+            logger.debug("Converter tasks completed: {}, timed out: {}, cancelled: {}, failed: {}",
+                    completedTasks, timedOutTasks, cancelledTasks, failedTasks);
+        }
+    }
 
+    /**
+     * Drops the task from the worker queue, or restarts its worker if terminate is true and the task is running
+     */
+    public void cancelTask(String taskId, boolean terminate) {
+        Optional.ofNullable(webWorkerTasks.remove(taskId))
+                .filter(future -> future.cancel(false))
+                .ifPresent(future -> cancelledTasks.increment());
+
+        threadService.runActionLater(() -> {
             try {
-                return convertContent(functionName, asciidoc, config).get(60, TimeUnit.SECONDS);
-            } catch (Exception e2) {
-                throw new RuntimeException(e2);
+                this.call("cancelTask", taskId, terminate);
+            } catch (Exception e) {
+                logger.debug("Problem occured while cancelling task {}", taskId, e);
             }
+        });
+    }
+
+    private boolean isPreviewFunction(String functionName) {
+        return "convertAsciidoc".equals(functionName) || "convertBlocks".equals(functionName);
+    }
+
+    private long getDeadline(String functionName) {
+        switch (functionName) {
+            case "convertHtml":
+                return htmlDeadline;
+            case "convertDocbook":
+                return docbookDeadline;
+            default:
+                return previewDeadline;
         }
     }
 
-    private CompletableFuture<ConverterResult> convertContent(String functionName, String asciidoc, JsonObject config) {
+    private CompletableFuture<ConverterResult> convertContent(String taskId, String functionName, String asciidoc, JsonObject config) {
 
         final CompletableFuture<ConverterResult> completableFuture = new CompletableFuture();
-        final String taskId = UUID.randomUUID().toString();
 
         webWorkerTasks.put(taskId, completableFuture);
-        final String conf = config.toString();
+        submitToWorker(taskId, functionName, asciidoc, config.toString(), completableFuture);
+
+        return completableFuture;
+    }
+
+    private void submitToWorker(String taskId, String functionName, String asciidoc, String conf, CompletableFuture<ConverterResult> completableFuture) {
         threadService.runActionLater(() -> {
             this.setMember("taskId", taskId);
             this.setMember("editorValue", asciidoc);
@@ -166,33 +293,71 @@ public class AsciidocWebkitConverter extends ViewPanel implements AsciidocConver
             try {
                 webEngine().executeScript(String.format("if ((typeof %s)!== \"undefined\"){ %s(taskId,editorValue,editorOptions) }", functionName, functionName));
             } catch (Exception e) {
-                completableFuture.completeExceptionally(e);
+                if (Objects.nonNull(completableFuture)) {
+                    completableFuture.completeExceptionally(e);
+                } else {
+                    logger.debug("Problem occured while running {} in worker", functionName, e);
+                }
             }
         });
+    }
 
-        return completableFuture;
+    public long getCompletedTaskCount() {
+        return completedTasks.sum();
+    }
+
+    public long getTimedOutTaskCount() {
+        return timedOutTasks.sum();
+    }
+
+    public long getCancelledTaskCount() {
+        return cancelledTasks.sum();
     }
 
-    private JsonObject updateConfig(TextChangeEvent event, JsonObject config) {
-        return configMerger.updateConfig(event, config);
+    public long getFailedTaskCount() {
+        return failedTasks.sum();
+    }
+
+    private JsonObject updateConfig(TextChangeEvent event, AsciidoctorConfigBase configBean) {
+        return configMerger.updateConfig(event, configBean);
     }
 
     @Override
     public ConverterResult convertDocbook(TextChangeEvent textChangeEvent) {
         String text = textChangeEvent.getText();
-        return convert("convertDocbook", text, updateConfig(textChangeEvent, docbookConfigBean.getJSON()));
+        return convert("convertDocbook", text, updateConfig(textChangeEvent, docbookConfigBean));
     }
 
     @Override
     public ConverterResult convertAsciidoc(TextChangeEvent textChangeEvent) {
         String text = textChangeEvent.getText();
-        return convert("convertAsciidoc", text, updateConfig(textChangeEvent, previewConfigBean.getJSON()));
+        return convert("convertAsciidoc", text, updateConfig(textChangeEvent, previewConfigBean));
+    }
+
+    @Override
+    public List<String> convertBlocks(TextChangeEvent textChangeEvent, List<String> blocks, List<Integer> lineOffsets) {
+        JsonArrayBuilder blockArray = Json.createArrayBuilder();
+        blocks.forEach(blockArray::add);
+        JsonArrayBuilder offsetArray = Json.createArrayBuilder();
+        lineOffsets.forEach(offsetArray::add);
+        String request = Json.createObjectBuilder()
+                .add("document", textChangeEvent.getText())
+                .add("blocks", blockArray)
+                .add("lineOffsets", offsetArray)
+                .build()
+                .toString();
+
+        ConverterResult result = convert("convertBlocks", request, updateConfig(textChangeEvent, previewConfigBean));
+
+        try (JsonReader reader = Json.createReader(new StringReader(result.getRendered()))) {
+            return reader.readArray().getValuesAs(JsonString::getString);
+        }
     }
 
     @Override
     public ConverterResult convertHtml(TextChangeEvent textChangeEvent) {
         String text = textChangeEvent.getText();
-        return convert("convertHtml", text, updateConfig(textChangeEvent, htmlConfigBean.getJSON()));
+        return convert("convertHtml", text, updateConfig(textChangeEvent, htmlConfigBean));
     }
 
     @Override
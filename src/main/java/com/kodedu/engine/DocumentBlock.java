@@ -0,0 +1,51 @@
+package com.kodedu.engine;
+
+import java.util.List;
+
+/**
+ * A top-level slice of an Asciidoc document which can be rendered on its own.
+ */
+public class DocumentBlock {
+
+    public enum Type {
+        HEADER, PREAMBLE, SECTION, BLOCK
+    }
+
+    private final Type type;
+    private final int startLine;
+    private final String text;
+    private final List<String> attributeEntries;
+
+    public DocumentBlock(Type type, int startLine, String text, List<String> attributeEntries) {
+        this.type = type;
+        this.startLine = startLine;
+        this.text = text;
+        this.attributeEntries = attributeEntries;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return 1-based line number of the first line of this block in the document
+     */
+    public int getStartLine() {
+        return startLine;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return attribute entry lines declared at the top level of this block
+     */
+    public List<String> getAttributeEntries() {
+        return attributeEntries;
+    }
+
+    public boolean isBlank() {
+        return text.isBlank();
+    }
+}
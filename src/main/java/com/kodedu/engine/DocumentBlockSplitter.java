@@ -0,0 +1,194 @@
+package com.kodedu.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Splits an Asciidoc document into top-level blocks (header, preamble, level-1 sections
+ * or paragraph-level blocks) which can be rendered independently of each other.
+ */
+public class DocumentBlockSplitter {
+
+    private static final Pattern DOCUMENT_TITLE = Pattern.compile("^(=|#)\\s+\\S.*$");
+    private static final Pattern SECTION_TITLE = Pattern.compile("^(==|##)\\s+\\S.*$");
+    private static final Pattern ATTRIBUTE_ENTRY = Pattern.compile("^:!?\\w[\\w-]*!?:.*$");
+    private static final Pattern BLOCK_ATTRIBUTE = Pattern.compile("^\\[.*\\]\\s*$");
+    private static final Pattern DISCRETE_HEADING = Pattern.compile("^\\[(discrete|float)([,#.%].*)?\\]\\s*$");
+    private static final Pattern DELIMITER = Pattern.compile("^(-{4,}|\\.{4,}|={4,}|\\*{4,}|_{4,}|\\+{4,}|/{4,}|--|[|,:!]={3,}|```.*)\\s*$");
+    private static final Pattern LIST_ITEM = Pattern.compile("^(\\s*([*\\-]+|\\.+|\\d+\\.|[a-zA-Z]\\.|<\\d+>)\\s+.*|.*?(:{2,4}|;;)(\\s.*)?)$");
+    private static final Pattern CONTINUATION_LINE = Pattern.compile("^(\\s+\\S.*|\\+\\s*)$");
+
+    public List<DocumentBlock> split(String text) {
+        String[] lines = text.split("\\r?\\n", -1);
+        boolean[] delimited = findDelimitedLines(lines);
+        List<DocumentBlock> blocks = new ArrayList<>();
+
+        int bodyStart = findHeaderEnd(lines);
+        if (bodyStart > 0) {
+            blocks.add(createBlock(DocumentBlock.Type.HEADER, lines, delimited, 0, bodyStart));
+        }
+
+        List<Integer> sectionStarts = findSectionStarts(lines, delimited, bodyStart);
+
+        if (sectionStarts.isEmpty()) {
+            splitParagraphs(blocks, lines, delimited, bodyStart, lines.length);
+            return blocks;
+        }
+
+        int preambleEnd = sectionStarts.get(0);
+        if (preambleEnd > bodyStart) {
+            DocumentBlock preamble = createBlock(DocumentBlock.Type.PREAMBLE, lines, delimited, bodyStart, preambleEnd);
+            if (!preamble.isBlank()) {
+                blocks.add(preamble);
+            }
+        }
+
+        for (int i = 0; i < sectionStarts.size(); i++) {
+            int end = i + 1 < sectionStarts.size() ? sectionStarts.get(i + 1) : lines.length;
+            blocks.add(createBlock(DocumentBlock.Type.SECTION, lines, delimited, sectionStarts.get(i), end));
+        }
+
+        return blocks;
+    }
+
+    private boolean[] findDelimitedLines(String[] lines) {
+        boolean[] delimited = new boolean[lines.length];
+        String closing = null;
+
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].stripTrailing();
+            if (closing != null) {
+                delimited[i] = true;
+                if (line.equals(closing)) {
+                    closing = null;
+                }
+                continue;
+            }
+            if (DELIMITER.matcher(line).matches()) {
+                delimited[i] = true;
+                closing = line.startsWith("```") ? "```" : line;
+            }
+        }
+
+        return delimited;
+    }
+
+    private int findHeaderEnd(String[] lines) {
+        int start = 0;
+        while (start < lines.length && lines[start].isBlank()) {
+            start++;
+        }
+
+        int end = start;
+        boolean header = false;
+        while (end < lines.length && !lines[end].isBlank()) {
+            String line = lines[end];
+            if (end == start && DOCUMENT_TITLE.matcher(line).matches()) {
+                header = true;
+            } else if (ATTRIBUTE_ENTRY.matcher(line).matches()) {
+                header = true;
+            } else if (!header && !line.startsWith("//")) {
+                return 0;
+            }
+            end++;
+        }
+
+        return header ? end : 0;
+    }
+
+    private List<Integer> findSectionStarts(String[] lines, boolean[] delimited, int bodyStart) {
+        List<Integer> starts = new ArrayList<>();
+
+        for (int i = bodyStart; i < lines.length; i++) {
+            if (delimited[i] || !SECTION_TITLE.matcher(lines[i]).matches()) {
+                continue;
+            }
+
+            int start = i;
+            boolean discrete = false;
+            while (start - 1 >= bodyStart && !delimited[start - 1] && BLOCK_ATTRIBUTE.matcher(lines[start - 1]).matches()) {
+                discrete |= DISCRETE_HEADING.matcher(lines[start - 1].stripTrailing()).matches();
+                start--;
+            }
+
+            if (!discrete && (start == bodyStart || lines[start - 1].isBlank())) {
+                starts.add(start);
+            }
+        }
+
+        return starts;
+    }
+
+    private void splitParagraphs(List<DocumentBlock> blocks, String[] lines, boolean[] delimited, int from, int to) {
+        int start = -1;
+
+        for (int i = from; i < to; i++) {
+            boolean blank = lines[i].isBlank() && !delimited[i];
+            if (start < 0) {
+                if (!blank) {
+                    start = i;
+                }
+                continue;
+            }
+            if (!blank) {
+                continue;
+            }
+
+            int next = i;
+            while (next < to && lines[next].isBlank() && !delimited[next]) {
+                next++;
+            }
+            if (next < to && isAttached(lines[start], lines[next])) {
+                i = next - 1;
+                continue;
+            }
+
+            blocks.add(createBlock(DocumentBlock.Type.BLOCK, lines, delimited, start, i));
+            start = -1;
+            i = next - 1;
+        }
+
+        if (start >= 0) {
+            blocks.add(createBlock(DocumentBlock.Type.BLOCK, lines, delimited, start, to));
+        }
+    }
+
+    private boolean isAttached(String firstLine, String nextLine) {
+        if (CONTINUATION_LINE.matcher(nextLine).matches()) {
+            return true;
+        }
+        return LIST_ITEM.matcher(firstLine).matches() && LIST_ITEM.matcher(nextLine).matches();
+    }
+
+    private DocumentBlock createBlock(DocumentBlock.Type type, String[] lines, boolean[] delimited, int start, int end) {
+        while (start < end && lines[start].isBlank()) {
+            start++;
+        }
+        while (end > start && lines[end - 1].isBlank()) {
+            end--;
+        }
+
+        List<String> attributeEntries = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+
+        for (int i = start; i < end; i++) {
+            if (i > start) {
+                text.append('\n');
+            }
+            text.append(lines[i]);
+
+            if (!delimited[i] && ATTRIBUTE_ENTRY.matcher(lines[i]).matches()) {
+                StringBuilder entry = new StringBuilder(lines[i]);
+                while (entry.toString().stripTrailing().endsWith("\\") && i + 1 < end) {
+                    i++;
+                    text.append('\n').append(lines[i]);
+                    entry.append('\n').append(lines[i]);
+                }
+                attributeEntries.add(entry.toString());
+            }
+        }
+
+        return new DocumentBlock(type, start + 1, text.toString(), attributeEntries);
+    }
+}
@@ -0,0 +1,204 @@
+package com.kodedu.engine;
+
+import com.kodedu.config.PreviewConfigBean;
+import com.kodedu.controller.TextChangeEvent;
+import com.kodedu.other.LRUMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import javax.json.JsonObject;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Renders the html5 preview block by block, so that only the blocks changed since the
+ * last render are sent to the converter. Documents using features whose output depends
+ * on the whole document (toc, numbering, includes, footnotes, counters, xrefs without text
+ * and conditionals) are not handled here and must be rendered as a whole.
+ */
+@Component
+public class IncrementalConverter {
+
+    private final Logger logger = LoggerFactory.getLogger(IncrementalConverter.class);
+
+    private static final Pattern DATA_LINE = Pattern.compile("data-line-(\\d+)");
+    private static final Pattern WHOLE_DOCUMENT_FEATURES = Pattern.compile(
+            "^:(toc|sectnums|numbered|backend|leveloffset):.*$" +
+                    "|^:doctype:\\s*book\\s*$" +
+                    "|^(include|ifdef|ifndef|ifeval)::" +
+                    "|footnote(ref)?:" +
+                    "|\\{counter2?:" +
+                    "|<<[^,>\\n]+>>" +
+                    "|xref:[^\\[\\s]+\\[\\]",
+            Pattern.MULTILINE);
+    private static final Set<String> WHOLE_DOCUMENT_ATTRIBUTES = Set.of("toc", "sectnums", "numbered", "leveloffset");
+
+    private final AsciidocConverterProvider converterProvider;
+    private final PreviewConfigBean previewConfigBean;
+    private final DocumentBlockSplitter blockSplitter = new DocumentBlockSplitter();
+
+    @Value("${application.preview.incremental}")
+    private boolean incremental;
+
+    @Value("${application.preview.block-cache-size}")
+    private int blockCacheSize;
+
+    private Map<String, String> blockCache;
+
+    @Autowired
+    public IncrementalConverter(AsciidocConverterProvider converterProvider, PreviewConfigBean previewConfigBean) {
+        this.converterProvider = converterProvider;
+        this.previewConfigBean = previewConfigBean;
+    }
+
+    @PostConstruct
+    public void init() {
+        blockCache = Collections.synchronizedMap(new LRUMap<>(blockCacheSize, true));
+    }
+
+    public boolean isApplicable(TextChangeEvent event) {
+        if (!incremental || !"asciidoc".equalsIgnoreCase(event.getMode())) {
+            return false;
+        }
+
+        JsonObject config = previewConfigBean.getJSON();
+        String backend = config.getString("backend", "html5");
+        if (!"html5".equals(backend) || config.getBoolean("header_footer", false)) {
+            return false;
+        }
+
+        JsonObject attributes = config.getJsonObject("attributes");
+        if (Objects.nonNull(attributes) && attributes.keySet().stream().anyMatch(WHOLE_DOCUMENT_ATTRIBUTES::contains)) {
+            return false;
+        }
+
+        return !WHOLE_DOCUMENT_FEATURES.matcher(event.getText()).find();
+    }
+
+    public IncrementalResult convert(TextChangeEvent event) {
+
+        String context = previewConfigBean.getJSON().toString() + "|" + event.getPath();
+        List<DocumentBlock> blocks = blockSplitter.split(event.getText());
+
+        List<String> attributeEntries = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        List<Integer> offsets = new ArrayList<>();
+        Map<String, PendingBlock> pendingBlocks = new LinkedHashMap<>();
+
+        for (DocumentBlock block : blocks) {
+            if (block.isBlank()) {
+                continue;
+            }
+
+            String prelude = String.join("\n", attributeEntries);
+            String source = prelude.isEmpty() ? block.getText() : prelude + "\n\n" + block.getText();
+            int base = prelude.isEmpty() ? 0 : prelude.split("\n", -1).length + 1;
+            String key = DigestUtils.md5DigestAsHex((context + "\n" + block.getType() + "\n" + source).getBytes(StandardCharsets.UTF_8));
+
+            keys.add(key);
+            offsets.add(block.getStartLine() - 1);
+
+            if (!blockCache.containsKey(key)) {
+                pendingBlocks.putIfAbsent(key, new PendingBlock(block.getType(), source, base, block.getStartLine() - 1 - base));
+            }
+
+            attributeEntries.addAll(block.getAttributeEntries());
+        }
+
+        if (!pendingBlocks.isEmpty()) {
+            convertPending(event, pendingBlocks);
+        }
+
+        List<IncrementalResult.RenderedBlock> renderedBlocks = new ArrayList<>();
+        Map<String, Integer> occurrences = new HashMap<>();
+        StringBuilder rendered = new StringBuilder();
+
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+            int offset = offsets.get(i);
+            String html = pendingBlocks.containsKey(key) ? pendingBlocks.get(key).html : blockCache.get(key);
+
+            if (Objects.isNull(html)) {
+                html = "";
+            }
+
+            int occurrence = occurrences.merge(key, 1, Integer::sum);
+            renderedBlocks.add(new IncrementalResult.RenderedBlock(key + "-" + occurrence, offset, html));
+            rendered.append(shiftDataLines(html, offset)).append("\n");
+        }
+
+        return new IncrementalResult(renderedBlocks, rendered.toString());
+    }
+
+    private void convertPending(TextChangeEvent event, Map<String, PendingBlock> pendingBlocks) {
+
+        List<String> sources = new ArrayList<>();
+        List<Integer> lineOffsets = new ArrayList<>();
+        pendingBlocks.values().forEach(block -> {
+            sources.add(block.source);
+            lineOffsets.add(block.lineOffset);
+        });
+
+        List<String> renderedList = converterProvider.get(previewConfigBean).convertBlocks(event, sources, lineOffsets);
+
+        if (renderedList.size() != sources.size()) {
+            throw new IllegalStateException(String.format("Expected %d rendered blocks but found %d", sources.size(), renderedList.size()));
+        }
+
+        int index = 0;
+        for (Map.Entry<String, PendingBlock> entry : pendingBlocks.entrySet()) {
+            PendingBlock block = entry.getValue();
+            String html = shiftDataLines(renderedList.get(index++), -block.base);
+
+            if (block.type == DocumentBlock.Type.PREAMBLE) {
+                html = "<div id=\"preamble\">\n<div class=\"sectionbody\">\n" + html + "\n</div>\n</div>";
+            }
+
+            block.html = html;
+            blockCache.put(entry.getKey(), html);
+        }
+
+        logger.debug("Rendered {} of the changed blocks", pendingBlocks.size());
+    }
+
+    private String shiftDataLines(String html, int offset) {
+        if (offset == 0) {
+            return html;
+        }
+
+        Matcher matcher = DATA_LINE.matcher(html);
+        StringBuilder builder = new StringBuilder(html.length() + 16);
+
+        while (matcher.find()) {
+            int line = Integer.parseInt(matcher.group(1)) + offset;
+            matcher.appendReplacement(builder, "data-line-" + line);
+        }
+        matcher.appendTail(builder);
+
+        return builder.toString();
+    }
+
+    private static class PendingBlock {
+
+        private final DocumentBlock.Type type;
+        private final String source;
+        private final int base;
+        // Document line of the block source, shifts the lines extensions report for the scheduler
+        private final int lineOffset;
+        private String html;
+
+        private PendingBlock(DocumentBlock.Type type, String source, int base, int lineOffset) {
+            this.type = type;
+            this.source = source;
+            this.base = base;
+            this.lineOffset = lineOffset;
+        }
+    }
+}
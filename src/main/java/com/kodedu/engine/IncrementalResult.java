@@ -0,0 +1,56 @@
+package com.kodedu.engine;
+
+import com.kodedu.other.ConverterResult;
+
+import java.util.List;
+
+/**
+ * Html5 preview result assembled from independently rendered document blocks
+ */
+public class IncrementalResult extends ConverterResult {
+
+    private final List<RenderedBlock> blocks;
+
+    public IncrementalResult(List<RenderedBlock> blocks, String rendered) {
+        super(null, rendered, "html5", "article");
+        this.blocks = blocks;
+    }
+
+    public List<RenderedBlock> getBlocks() {
+        return blocks;
+    }
+
+    public static class RenderedBlock {
+
+        private final String key;
+        private final int offset;
+        private final String html;
+
+        public RenderedBlock(String key, int offset, String html) {
+            this.key = key;
+            this.offset = offset;
+            this.html = html;
+        }
+
+        /**
+         * @return key of the block which is unique in the document
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return line offset to be added to block-relative data-line numbers
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return html of the block with block-relative data-line numbers
+         */
+        public String getHtml() {
+            return html;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.kodedu.engine;
+
+import com.kodedu.other.ConverterResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.json.JsonObject;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps converter results by document text, merged config and backend, evicting the least
+ * recently used results when the rendered content exceeds the configured size.
+ */
+@Component
+public class RenderResultCache {
+
+    // Output of these depends on files or side effects outside of the document text
+    private static final Pattern NOT_CACHEABLE = Pattern.compile("include::|\\[chart[,\\]]|chart::");
+
+    @Value("${application.render.result-cache-size}")
+    private long maximumSize;
+
+    private final LinkedHashMap<String, ConverterResult> results = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    public String cacheKey(String functionName, JsonObject config, String text) {
+        String backend = config.getString("backend", functionName);
+        String configHash = DigestUtils.md5DigestAsHex(config.toString().getBytes(StandardCharsets.UTF_8));
+        String textHash = DigestUtils.md5DigestAsHex(text.getBytes(StandardCharsets.UTF_8));
+        return String.join("|", functionName, backend, configHash, textHash);
+    }
+
+    public boolean isCacheable(String text) {
+        return !NOT_CACHEABLE.matcher(text).find();
+    }
+
+    /**
+     * @return a copy of the cached result, dated now so that it is not taken as a stale render
+     */
+    public synchronized Optional<ConverterResult> get(String key) {
+        return Optional.ofNullable(results.get(key)).map(ConverterResult::new);
+    }
+
+    public synchronized void put(String key, ConverterResult result) {
+        long weight = weightOf(result);
+        if (weight > maximumSize) {
+            return;
+        }
+
+        ConverterResult previous = results.put(key, result);
+        if (Objects.nonNull(previous)) {
+            size -= weightOf(previous);
+        }
+        size += weight;
+
+        Iterator<Map.Entry<String, ConverterResult>> iterator = results.entrySet().iterator();
+        while (size > maximumSize && iterator.hasNext()) {
+            size -= weightOf(iterator.next().getValue());
+            iterator.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        results.clear();
+        size = 0;
+    }
+
+    private long weightOf(ConverterResult result) {
+        String rendered = result.getRendered();
+        return Objects.isNull(rendered) ? 0 : 2L * rendered.length();
+    }
+}
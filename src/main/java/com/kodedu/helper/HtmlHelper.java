@@ -0,0 +1,134 @@
+package com.kodedu.helper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+public class HtmlHelper {
+
+    private static final Set<String> VOID_ELEMENTS = Set.of("area", "base", "br", "col", "embed", "hr", "img",
+            "input", "link", "meta", "param", "source", "track", "wbr");
+
+    private static final Set<String> RAW_TEXT_ELEMENTS = Set.of("script", "style", "textarea");
+
+    /**
+     * Splits an html fragment into its top-level elements. Comments between top-level elements are dropped.
+     *
+     * @return top-level elements, or null if the html has top-level text or is not balanced
+     */
+    public static List<String> splitTopLevelElements(String html) {
+        List<String> elements = new ArrayList<>();
+        int length = html.length();
+        int depth = 0;
+        int start = 0;
+        int i = 0;
+
+        while (i < length) {
+            char c = html.charAt(i);
+
+            if (c != '<') {
+                if (depth == 0 && !Character.isWhitespace(c)) {
+                    return null;
+                }
+                i++;
+                continue;
+            }
+
+            if (html.startsWith("<!--", i)) {
+                int end = html.indexOf("-->", i + 4);
+                if (end < 0) {
+                    return null;
+                }
+                i = end + 3;
+                continue;
+            }
+
+            int end = tagEnd(html, i);
+            if (end < 0) {
+                return null;
+            }
+
+            boolean closing = i + 1 < length && html.charAt(i + 1) == '/';
+            String name = tagName(html, closing ? i + 2 : i + 1);
+
+            if (name.isEmpty()) {
+                // doctype or processing instruction
+                i = end + 1;
+                continue;
+            }
+
+            if (closing) {
+                depth--;
+                if (depth < 0) {
+                    return null;
+                }
+                i = end + 1;
+                if (depth == 0) {
+                    elements.add(html.substring(start, i));
+                }
+                continue;
+            }
+
+            if (depth == 0) {
+                start = i;
+            }
+
+            if (html.charAt(end - 1) == '/' || VOID_ELEMENTS.contains(name)) {
+                i = end + 1;
+                if (depth == 0) {
+                    elements.add(html.substring(start, i));
+                }
+                continue;
+            }
+
+            depth++;
+            i = end + 1;
+
+            if (RAW_TEXT_ELEMENTS.contains(name)) {
+                int close = closingTag(html, name, i);
+                if (close < 0) {
+                    return null;
+                }
+                i = close;
+            }
+        }
+
+        return depth == 0 ? elements : null;
+    }
+
+    private static int tagEnd(String html, int offset) {
+        char quote = 0;
+        for (int i = offset; i < html.length(); i++) {
+            char c = html.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int closingTag(String html, String name, int offset) {
+        int last = html.length() - name.length() - 2;
+        for (int i = html.indexOf("</", offset); i >= 0 && i <= last; i = html.indexOf("</", i + 2)) {
+            if (html.regionMatches(true, i + 2, name, 0, name.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String tagName(String html, int offset) {
+        int end = offset;
+        while (end < html.length() && Character.isLetterOrDigit(html.charAt(end))) {
+            end++;
+        }
+        return html.substring(offset, end).toLowerCase(Locale.ENGLISH);
+    }
+}
@@ -47,7 +47,7 @@ public class IOHelper {
 
     private static final Logger logger = LoggerFactory.getLogger(IOHelper.class);
 
-    private static final Map<Path, String> pathCharsetMap = new LRUMap();
+    private static final Map<Path, String> pathCharsetMap = new LRUMap<>();
     private static Path installationPath;
 
     public static Optional<Exception> writeToFile(Path path, String content, StandardOpenOption... openOption) {
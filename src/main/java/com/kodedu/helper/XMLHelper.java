@@ -5,6 +5,7 @@ import org.slf4j.LoggerFactory;
 import org.w3c.dom.Node;
 
 import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
@@ -19,15 +20,19 @@ public class XMLHelper {
     private static final Logger logger = LoggerFactory.getLogger(IOHelper.class);
 
     public static String nodeToString(Node node, boolean omitDeclaration) {
+        return sourceToString(new DOMSource(node), omitDeclaration);
+    }
+
+    public static String sourceToString(Source source, boolean omitDeclaration) {
         try (StringWriter writer = new StringWriter();) {
             Transformer transformer = TransformerFactory.newInstance().newTransformer();
             transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, omitDeclaration ? "yes" : "no");
             transformer.setOutputProperty(OutputKeys.INDENT, "no");
 
-            transformer.transform(new DOMSource(node), new StreamResult(writer));
+            transformer.transform(source, new StreamResult(writer));
             return writer.toString();
         } catch (Exception ex) {
-            logger.error("Problem occured while converting Node to String", ex);
+            logger.error("Problem occured while converting XML to String", ex);
         }
         return "";
     }
@@ -1,7 +1,9 @@
 package com.kodedu.other;
 
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 
 public class ContentFixes {
@@ -9,27 +11,20 @@ public class ContentFixes {
     private static final List<String> extensions = Arrays.asList("stem", "asciimath", "latexmath", "mathml",
             "math", "plantuml", "uml", "ditaa", "graphviz", "tree", "mermaid");
 
-    // stem: to s_t_e_m:
+    private static final ExtensionNameScanner encoder = new ExtensionNameScanner(false);
+    private static final ExtensionNameScanner decoder = new ExtensionNameScanner(true);
+
+    // stem: to STEM:
     public static String encodeExtensionNames(String content) {
-        for (String extension : extensions) {
-            String replacement = extension.toUpperCase();
-            content = getString(content, extension, replacement);
-        }
-        return content;
+        return encoder.rewrite(content);
     }
 
-    // s_t_e_m: to stem:
+    // STEM: to stem:
     // good to have if extensions in comment block
     public static String decodeExtensionNames(String content) {
-        for (String extension : extensions) {
-            String replacement = extension.toUpperCase();
-            content = getString(content, replacement, extension);
-        }
-        return content;
+        return decoder.rewrite(content);
     }
 
-
-
     public static String fixLineEnding(String rendered) {
 
         if (Objects.isNull(rendered)) {
@@ -39,10 +34,89 @@ public class ContentFixes {
         return rendered.replaceAll("\\R", "\n");
     }
 
-    private static String getString(String content, String extension, String replacement) {
-        content = content.replaceAll("\\[" + extension, "[" + replacement);
-        content = content.replaceAll(extension + "::", replacement + "::");
-        content = content.replaceAll(extension + ":\\[", replacement + ":[");
-        return content;
+    /**
+     * Rewrites "[name", "name::" and "name:[" occurrences of the extension names in one pass
+     */
+    private static class ExtensionNameScanner {
+
+        private final String[] names;
+        private final String[] replacements;
+
+        private ExtensionNameScanner(boolean decode) {
+            // Longer names first, so that mathml wins over math
+            String[] sorted = extensions.stream()
+                    .sorted(Comparator.comparingInt(String::length).reversed())
+                    .toArray(String[]::new);
+            String[] upperCased = Arrays.stream(sorted)
+                    .map(name -> name.toUpperCase(Locale.ENGLISH))
+                    .toArray(String[]::new);
+
+            this.names = decode ? upperCased : sorted;
+            this.replacements = decode ? sorted : upperCased;
+        }
+
+        private String rewrite(String content) {
+
+            if (Objects.isNull(content)) {
+                return null;
+            }
+
+            StringBuilder builder = null;
+            int copied = 0;
+            int length = content.length();
+
+            for (int i = 0; i < length; i++) {
+                char c = content.charAt(i);
+
+                if (c == '[') {
+                    int index = nameStartingAt(content, i + 1);
+                    if (index >= 0) {
+                        builder = append(builder, content, copied, i + 1);
+                        builder.append(replacements[index]);
+                        copied = i + 1 + names[index].length();
+                        i = copied - 1;
+                    }
+                } else if (c == ':' && i + 1 < length && (content.charAt(i + 1) == ':' || content.charAt(i + 1) == '[')) {
+                    int index = nameEndingAt(content, i, copied);
+                    if (index >= 0) {
+                        builder = append(builder, content, copied, i - names[index].length());
+                        builder.append(replacements[index]);
+                        copied = i;
+                    }
+                }
+            }
+
+            if (Objects.isNull(builder)) {
+                return content;
+            }
+
+            return builder.append(content, copied, length).toString();
+        }
+
+        private StringBuilder append(StringBuilder builder, String content, int start, int end) {
+            if (Objects.isNull(builder)) {
+                builder = new StringBuilder(content.length() + 16);
+            }
+            return builder.append(content, start, end);
+        }
+
+        private int nameStartingAt(String content, int offset) {
+            for (int i = 0; i < names.length; i++) {
+                if (content.startsWith(names[i], offset)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int nameEndingAt(String content, int end, int lowerBound) {
+            for (int i = 0; i < names.length; i++) {
+                int start = end - names[i].length();
+                if (start >= lowerBound && content.startsWith(names[i], start)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
     }
 }
@@ -24,6 +24,16 @@ public class ConverterResult {
         this.doctype = doctype;
     }
 
+    /**
+     * Copies an already rendered result as a new result, without redoing the final replacements
+     */
+    public ConverterResult(ConverterResult result) {
+        this.taskId = result.taskId;
+        this.rendered = result.rendered;
+        this.backend = result.backend;
+        this.doctype = result.doctype;
+    }
+
     private String doFinalReplacements(String rendered) {
         rendered = fixLineEnding(rendered);
         rendered = decodeExtensionNames(rendered);
@@ -27,7 +27,7 @@ public class Current {
     private final ApplicationController controller;
     private final ThreadService threadService;
 
-    private Map<String, Integer> cache;
+    private Map<String, String> cache;
     private Path currentEpubPath;
 
     @Autowired
@@ -56,13 +56,13 @@ public class Current {
         return currentWebView().getEngine();
     }
 
-    public Map<String, Integer> getCache() {
+    public Map<String, String> getCache() {
         if (Objects.isNull(cache))
-            cache = new ConcurrentHashMap<String, Integer>();
+            cache = new ConcurrentHashMap<String, String>();
         return cache;
     }
 
-    public void setCache(Map<String, Integer> cache) {
+    public void setCache(Map<String, String> cache) {
         this.cache = cache;
     }
 
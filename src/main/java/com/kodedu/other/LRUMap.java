@@ -3,11 +3,22 @@ package com.kodedu.other;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
-public class LRUMap extends LinkedHashMap {
+public class LRUMap<K, V> extends LinkedHashMap<K, V> {
+
+    private final int maximumSize;
+
+    public LRUMap() {
+        this(10000, false);
+    }
+
+    public LRUMap(int maximumSize, boolean accessOrder) {
+        super(16, 0.75f, accessOrder);
+        this.maximumSize = maximumSize;
+    }
 
     @Override
-    protected boolean removeEldestEntry(Map.Entry eldest) {
-        return size() > 10000;
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > maximumSize;
     }
 
 }
@@ -0,0 +1,45 @@
+package com.kodedu.other;
+
+import javafx.scene.control.TreeItem;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+
+/**
+ * Builds a tree from items given in document order with their indent levels.
+ * Open ancestors are kept on a stack, so every item is attached in constant time.
+ */
+public class TreeBuilder<T> {
+
+    private final Deque<Tuple<Integer, TreeItem<T>>> ancestors = new ArrayDeque<>();
+    private TreeItem<T> root;
+    private int size;
+
+    public void add(int level, TreeItem<T> item) {
+        size++;
+
+        if (Objects.isNull(root)) {
+            root = item;
+            ancestors.push(new Tuple<>(level, item));
+            return;
+        }
+
+        while (!ancestors.isEmpty() && ancestors.peek().getKey() >= level) {
+            ancestors.pop();
+        }
+
+        // Items not deeper than the root are attached to the root
+        TreeItem<T> parent = ancestors.isEmpty() ? root : ancestors.peek().getValue();
+        parent.getChildren().add(item);
+        ancestors.push(new Tuple<>(level, item));
+    }
+
+    public TreeItem<T> getRoot() {
+        return root;
+    }
+
+    public int size() {
+        return size;
+    }
+}
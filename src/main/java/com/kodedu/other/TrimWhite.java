@@ -2,57 +2,306 @@ package com.kodedu.other;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Objects;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Created by usta on 16.03.2015.
+ * <p>
+ * Crops white margins on all sides. Rows are scanned on the backing raster array from the edges inward,
+ * large images are split into row bands which are scanned in parallel.
  */
 public class TrimWhite {
 
+    private static final int PADDING = 5;
+    private static final int WHITE = 0xFFFFFFFF;
+    // Pixels scanned by a single band before it is split
+    private static final int BAND_PIXELS = 1 << 18;
+
     public BufferedImage trim(BufferedImage img) {
-        int width = getTrimmedWidth(img) + 5;
-        int height = getTrimmedHeight(img) + 5;
+        Rectangle bounds = bounds(img);
+        if (Objects.isNull(bounds)) {
+            bounds = new Rectangle(0, 0, 0, 0);
+        }
+
+        int width = bounds.width + PADDING * 2;
+        int height = bounds.height + PADDING * 2;
 
         BufferedImage newImg = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
         Graphics g = newImg.createGraphics();
-        g.drawImage(img, 0, 0, null);
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        g.drawImage(img, PADDING, PADDING, PADDING + bounds.width, PADDING + bounds.height,
+                bounds.x, bounds.y, bounds.x + bounds.width, bounds.y + bounds.height, null);
         g.dispose();
         return newImg;
     }
 
-    private int getTrimmedWidth(BufferedImage img) {
-        int height = img.getHeight();
+    /**
+     * @return bounds of the non white pixels, or null if the image is all white
+     */
+    public Rectangle bounds(BufferedImage img) {
+        Rows rows = rows(img);
         int width = img.getWidth();
-        int trimmedWidth = 0;
+        int height = img.getHeight();
+        if (width == 0 || height == 0) {
+            return null;
+        }
+
+        int bandRows = Math.max(1, BAND_PIXELS / width);
+        int[] bounds = new BandTask(rows, width, 0, height, bandRows).invoke();
+        if (Objects.isNull(bounds)) {
+            return null;
+        }
+        return new Rectangle(bounds[2], bounds[0], bounds[3] - bounds[2] + 1, bounds[1] - bounds[0] + 1);
+    }
+
+    public boolean isBlank(BufferedImage img) {
+        return Objects.isNull(bounds(img));
+    }
+
+    private Rows rows(BufferedImage img) {
+        Raster raster = img.getRaster();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        int translateX = raster.getSampleModelTranslateX();
+        int translateY = raster.getSampleModelTranslateY();
+
+        switch (img.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+                if (dataBuffer instanceof DataBufferInt && dataBuffer.getNumBanks() == 1
+                        && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+                    SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) raster.getSampleModel();
+                    int alpha = img.getType() == BufferedImage.TYPE_INT_RGB ? 0xFF000000 : 0;
+                    int stride = model.getScanlineStride();
+                    int offset = dataBuffer.getOffset() - translateY * stride - translateX;
+                    return new IntRows(((DataBufferInt) dataBuffer).getData(), offset, stride, alpha);
+                }
+                break;
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+            case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+            case BufferedImage.TYPE_BYTE_GRAY:
+                // White pixels have every byte set in these layouts
+                if (dataBuffer instanceof DataBufferByte && dataBuffer.getNumBanks() == 1
+                        && raster.getSampleModel() instanceof ComponentSampleModel) {
+                    ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+                    int pixelStride = model.getPixelStride();
+                    if (pixelStride == raster.getNumBands()) {
+                        int stride = model.getScanlineStride();
+                        int offset = dataBuffer.getOffset() - translateY * stride - translateX * pixelStride;
+                        return new ByteRows(((DataBufferByte) dataBuffer).getData(), offset, stride, pixelStride);
+                    }
+                }
+                break;
+        }
+
+        return new RgbRows(img);
+    }
+
+    /**
+     * Searches non white pixels in a row, between from and to (both inclusive).
+     */
+    private interface Rows {
+
+        // First non white x scanning to the right, or -1
+        int first(int y, int from, int to);
+
+        // Last non white x scanning to the left, or -1
+        int last(int y, int from, int to);
+    }
 
-        for (int i = 0; i < height; i++) {
-            for (int j = width - 1; j >= 0; j--) {
-                if (img.getRGB(j, i) != Color.WHITE.getRGB() &&
-                        j > trimmedWidth) {
-                    trimmedWidth = j;
-                    break;
+    private static class IntRows implements Rows {
+        private final int[] data;
+        private final int offset;
+        private final int stride;
+        private final int alpha;
+
+        private IntRows(int[] data, int offset, int stride, int alpha) {
+            this.data = data;
+            this.offset = offset;
+            this.stride = stride;
+            this.alpha = alpha;
+        }
+
+        @Override
+        public int first(int y, int from, int to) {
+            int row = offset + y * stride;
+            for (int x = from; x <= to; x++) {
+                if ((data[row + x] | alpha) != WHITE) {
+                    return x;
                 }
             }
+            return -1;
         }
 
-        return trimmedWidth;
+        @Override
+        public int last(int y, int from, int to) {
+            int row = offset + y * stride;
+            for (int x = to; x >= from; x--) {
+                if ((data[row + x] | alpha) != WHITE) {
+                    return x;
+                }
+            }
+            return -1;
+        }
     }
 
-    private int getTrimmedHeight(BufferedImage img) {
-        int width = img.getWidth();
-        int height = img.getHeight();
-        int trimmedHeight = 0;
+    private static class ByteRows implements Rows {
+        private final byte[] data;
+        private final int offset;
+        private final int stride;
+        private final int pixelStride;
+
+        private ByteRows(byte[] data, int offset, int stride, int pixelStride) {
+            this.data = data;
+            this.offset = offset;
+            this.stride = stride;
+            this.pixelStride = pixelStride;
+        }
+
+        @Override
+        public int first(int y, int from, int to) {
+            int row = offset + y * stride;
+            int end = row + (to + 1) * pixelStride;
+            for (int i = row + from * pixelStride; i < end; i++) {
+                if (data[i] != -1) {
+                    return (i - row) / pixelStride;
+                }
+            }
+            return -1;
+        }
 
-        for (int i = 0; i < width; i++) {
-            for (int j = height - 1; j >= 0; j--) {
-                if (img.getRGB(i, j) != Color.WHITE.getRGB() &&
-                        j > trimmedHeight) {
-                    trimmedHeight = j;
-                    break;
+        @Override
+        public int last(int y, int from, int to) {
+            int row = offset + y * stride;
+            int start = row + from * pixelStride;
+            for (int i = row + (to + 1) * pixelStride - 1; i >= start; i--) {
+                if (data[i] != -1) {
+                    return (i - row) / pixelStride;
                 }
             }
+            return -1;
         }
+    }
 
-        return trimmedHeight;
+    // Falls back to converted rows for the other image types
+    private static class RgbRows implements Rows {
+        private final BufferedImage img;
+        private final ThreadLocal<int[]> buffer;
+
+        private RgbRows(BufferedImage img) {
+            this.img = img;
+            this.buffer = ThreadLocal.withInitial(() -> new int[img.getWidth()]);
+        }
+
+        @Override
+        public int first(int y, int from, int to) {
+            int[] row = img.getRGB(from, y, to - from + 1, 1, buffer.get(), 0, img.getWidth());
+            for (int x = 0; x <= to - from; x++) {
+                if (row[x] != WHITE) {
+                    return from + x;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int last(int y, int from, int to) {
+            int[] row = img.getRGB(from, y, to - from + 1, 1, buffer.get(), 0, img.getWidth());
+            for (int x = to - from; x >= 0; x--) {
+                if (row[x] != WHITE) {
+                    return from + x;
+                }
+            }
+            return -1;
+        }
     }
 
+    /**
+     * Finds {top, bottom, left, right} of the non white pixels between the rows start (inclusive) and end (exclusive).
+     */
+    private static class BandTask extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final Rows rows;
+        private final int width;
+        private final int start;
+        private final int end;
+        private final int bandRows;
+
+        private BandTask(Rows rows, int width, int start, int end, int bandRows) {
+            this.rows = rows;
+            this.width = width;
+            this.start = start;
+            this.end = end;
+            this.bandRows = bandRows;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (end - start > bandRows) {
+                int middle = (start + end) >>> 1;
+                BandTask upper = new BandTask(rows, width, start, middle, bandRows);
+                BandTask lower = new BandTask(rows, width, middle, end, bandRows);
+                upper.fork();
+                int[] lowerBounds = lower.compute();
+                return merge(upper.join(), lowerBounds);
+            }
+            return scan();
+        }
+
+        private int[] scan() {
+            int top = start;
+            int left = -1;
+            while (top < end && (left = rows.first(top, 0, width - 1)) < 0) {
+                top++;
+            }
+            if (top == end) {
+                return null;
+            }
+
+            int right = rows.last(top, left, width - 1);
+            int bottom = end - 1;
+            int lastRight = -1;
+            while (bottom > top && (lastRight = rows.last(bottom, 0, width - 1)) < 0) {
+                bottom--;
+            }
+            right = Math.max(right, lastRight);
+
+            // Rows in between can only widen the bounds, so each of them stops at the bounds found so far
+            for (int y = top + 1; y <= bottom; y++) {
+                if (left > 0) {
+                    int first = rows.first(y, 0, left - 1);
+                    if (first >= 0) {
+                        left = first;
+                    }
+                }
+                if (right < width - 1) {
+                    int last = rows.last(y, right + 1, width - 1);
+                    if (last >= 0) {
+                        right = last;
+                    }
+                }
+            }
+            return new int[]{top, bottom, left, right};
+        }
+
+        private int[] merge(int[] upper, int[] lower) {
+            if (Objects.isNull(upper)) {
+                return lower;
+            }
+            if (Objects.isNull(lower)) {
+                return upper;
+            }
+            return new int[]{upper[0], lower[1], Math.min(upper[2], lower[2]), Math.max(upper[3], lower[3])};
+        }
+    }
 }
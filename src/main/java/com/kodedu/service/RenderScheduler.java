@@ -0,0 +1,28 @@
+package com.kodedu.service;
+
+import com.kodedu.controller.TextChangeEvent;
+
+import java.util.function.Predicate;
+
+/**
+ * Coalesces text change events and renders only the latest one in a dedicated thread
+ */
+public interface RenderScheduler {
+
+    // The renderer returns false if it didn't render the event, its input is rendered again when submitted
+    public void start(Predicate<TextChangeEvent> renderer);
+
+    // Renders the event unless it has the same input as the last rendered one
+    public void submit(TextChangeEvent event);
+
+    // Renders the event even if it has the same input as the last rendered one
+    public void submitForced(TextChangeEvent event);
+
+    // Number of submitted events waiting to be coalesced into the next render
+    public int getQueueDepth();
+
+    public long getDebounceMillis();
+
+    // Render latency percentile in millis over the recent renders, percentile is in [0, 100]
+    public long getLatencyPercentile(double percentile);
+}
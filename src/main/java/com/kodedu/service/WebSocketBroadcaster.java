@@ -0,0 +1,31 @@
+package com.kodedu.service;
+
+import com.kodedu.engine.IncrementalResult;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Map;
+
+/**
+ * Sends the rendered preview to the live preview sessions. Each session only keeps the latest
+ * pending frame, older frames not sent yet are dropped since every frame holds the whole document.
+ */
+public interface WebSocketBroadcaster {
+
+    public void register(WebSocketSession session);
+
+    public void unregister(WebSocketSession session);
+
+    public void broadcast(String html);
+
+    // Sends only the blocks which are not known by each session
+    public void broadcastBlocks(IncrementalResult result);
+
+    public void send(WebSocketSession session, String html);
+
+    public void sendBlocks(WebSocketSession session, IncrementalResult result);
+
+    public int getSessionCount();
+
+    // Millis between the creation and the delivery of the last frame sent to each session, by session id
+    public Map<String, Long> getSessionLags();
+}
@@ -10,6 +10,7 @@ public interface BinaryCacheService {
 
     public String putBinary(String key, byte[] bytes);
 
+    // The returned data is pinned, callers unpin it when they are done reading
     public CacheData getCacheData(String key);
 
     public void putBinary(String key, BufferedImage trimmed);
@@ -1,23 +1,26 @@
 package com.kodedu.service.cache;
 
 import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * Created by usta on 12.06.2016.
+ * <p>
+ * Reads are positional and keep no cursor in the cache data, so the same entry can be read concurrently.
  */
 public interface CacheData {
 
     long length();
 
-    void seek(long pos) throws IOException;
-
     byte[] readBytes();
 
     long lastModified();
 
-    int read(byte[] buffer) throws IOException;
+    // Reads up to length bytes starting at position into buffer, returns -1 at the end of data
+    int read(long position, byte[] buffer, int offset, int length) throws IOException;
 
-    void closeStream() throws IOException;
+    // Writes count bytes starting at position to the target without going through a heap buffer
+    long transferTo(long position, long count, WritableByteChannel target) throws IOException;
 
     boolean inMemory();
 
@@ -26,4 +29,15 @@ public interface CacheData {
     String key();
 
     void removeFromDisk();
+
+    // Gives back the storage of an entry evicted from the memory tier
+    default void release() {
+    }
+
+    // Keeps the data readable until unpin, even if the entry is evicted or removed meanwhile
+    default void pin() {
+    }
+
+    default void unpin() {
+    }
 }
@@ -0,0 +1,24 @@
+package com.kodedu.service.cache;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+
+/**
+ * Persistent, content addressed store of rendered diagrams shared by the extension services
+ */
+public interface DiagramCacheService {
+    public final static String label = "core::service::cache::DiagramCache";
+
+    // Strong hash of the diagram type, output format, default image settings and inputs
+    public String hash(String type, String imageTarget, Object... inputs);
+
+    // Writes the stored diagram to the image target, returns false if nothing is stored for the hash
+    public boolean restore(String hash, Path root, String imageTarget);
+
+    public void write(String hash, Path root, String imageTarget, byte[] bytes);
+
+    // Writes the diagram to the image target without storing it, for diagrams whose inputs aren't all hashed
+    public void writeTarget(Path root, String imageTarget, byte[] bytes);
+
+    public void write(String hash, Path root, String imageTarget, BufferedImage image);
+}
@@ -1,9 +1,9 @@
 package com.kodedu.service.cache;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.time.ZonedDateTime;
-import java.util.Objects;
 
 /**
  * Created by usta on 12.06.2016.
@@ -13,7 +13,6 @@ public class InMemoryDAta implements CacheData {
     private final byte[] bytes;
     private final ZonedDateTime lastModified;
     private final String key;
-    private ByteArrayInputStream byteArrayStream;
 
     public InMemoryDAta(String key, byte[] bytes) {
         this.key = key;
@@ -31,36 +30,31 @@ public class InMemoryDAta implements CacheData {
         return bytes.length;
     }
 
-    @Override
-    public void seek(long pos) throws IOException {
-        if (Objects.isNull(byteArrayStream)) {
-            this.byteArrayStream = new ByteArrayInputStream(bytes);
-        }
-        // 2 lines equal to seek
-        byteArrayStream.reset();
-        byteArrayStream.skip(pos);
-    }
-
     @Override
     public long lastModified() {
         return lastModified.toEpochSecond();
     }
 
     @Override
-    public int read(byte[] buffer) throws IOException {
-        if (Objects.isNull(byteArrayStream)) {
-            this.byteArrayStream = new ByteArrayInputStream(bytes);
+    public int read(long position, byte[] buffer, int offset, int length) {
+        if (position >= bytes.length) {
+            return -1;
         }
-        return byteArrayStream.read(buffer);
+        int read = (int) Math.min(length, bytes.length - position);
+        System.arraycopy(bytes, (int) position, buffer, offset, read);
+        return read;
     }
 
     @Override
-    public void closeStream() throws IOException {
-        ByteArrayInputStream currentByteArrayStream = byteArrayStream;
-        if (Objects.nonNull(currentByteArrayStream)) {
-            byteArrayStream = null;
-            currentByteArrayStream.close();
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        int start = (int) Math.min(position, bytes.length);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, start, (int) Math.min(count, bytes.length - start));
+
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += target.write(buffer);
         }
+        return written;
     }
 
     @Override
@@ -0,0 +1,181 @@
+package com.kodedu.service.cache;
+
+import com.kodedu.helper.IOHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * Disk cache entry read through a read-only memory mapping of the file,
+ * so serving it does not copy the file onto the Java heap.
+ * <p>
+ * Reads and pins keep the mapping. A removed entry is unmapped and deleted when its last read or pin ends,
+ * reads starting after that find no data.
+ */
+public class MappedDiskData implements CacheData {
+    private static final Logger logger = LoggerFactory.getLogger(MappedDiskData.class);
+
+    private final Path path;
+    private final String key;
+    private MappedByteBuffer mappedBuffer;
+    private int readers;
+    private boolean removed;
+
+    public MappedDiskData(String key, Path path) {
+        this.key = key;
+        this.path = path;
+    }
+
+    @Override
+    public synchronized void pin() {
+        readers++;
+    }
+
+    // Returns a view of the mapping which stays valid until unpin, or null once the entry is disposed
+    private synchronized ByteBuffer view() throws IOException {
+        if (removed && readers == 0) {
+            return null;
+        }
+        if (Objects.isNull(mappedBuffer)) {
+            // The mapping stays valid after its channel is closed, so no file descriptor is held per entry
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+        readers++;
+        return mappedBuffer.duplicate();
+    }
+
+    @Override
+    public synchronized void unpin() {
+        readers--;
+        if (removed && readers == 0) {
+            dispose();
+        }
+    }
+
+    @Override
+    public byte[] readBytes() {
+        try {
+            ByteBuffer buffer = view();
+            if (Objects.isNull(buffer)) {
+                return new byte[0];
+            }
+            try {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                return bytes;
+            } finally {
+                unpin();
+            }
+        } catch (IOException e) {
+            return IOHelper.readAllBytes(path);
+        }
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        ByteBuffer buffer = view();
+        if (Objects.isNull(buffer)) {
+            return 0;
+        }
+
+        try {
+            int start = (int) Math.min(position, buffer.limit());
+            buffer.position(start).limit((int) Math.min(buffer.limit(), start + count));
+
+            long written = 0;
+            while (buffer.hasRemaining()) {
+                written += target.write(buffer);
+            }
+            return written;
+        } finally {
+            unpin();
+        }
+    }
+
+    @Override
+    public long length() {
+        return path.toFile().length();
+    }
+
+    @Override
+    public long lastModified() {
+        return path.toFile().lastModified();
+    }
+
+    @Override
+    public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+        // Every read works on its own view of the mapping
+        ByteBuffer source = view();
+        if (Objects.isNull(source)) {
+            return -1;
+        }
+
+        try {
+            if (position >= source.limit()) {
+                return -1;
+            }
+            source.position((int) position);
+            int read = Math.min(length, source.remaining());
+            source.get(buffer, offset, read);
+            return read;
+        } finally {
+            unpin();
+        }
+    }
+
+    @Override
+    public synchronized void removeFromDisk() {
+        removed = true;
+        if (readers == 0) {
+            dispose();
+        }
+    }
+
+    private void dispose() {
+        if (Objects.nonNull(mappedBuffer)) {
+            // A file can't be deleted on Windows while it is mapped, and the mapping is otherwise released only by the GC
+            unmap(mappedBuffer);
+            mappedBuffer = null;
+        }
+        if (IOHelper.deleteIfExists(path).isPresent()) {
+            path.toFile().deleteOnExit();
+        }
+    }
+
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.debug("Mapping is left to the garbage collector", e);
+        }
+    }
+
+    @Override
+    public boolean inMemory() {
+        return false;
+    }
+
+    @Override
+    public boolean inDisk() {
+        return true;
+    }
+
+    @Override
+    public String key() {
+        return key;
+    }
+}
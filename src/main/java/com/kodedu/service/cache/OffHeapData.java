@@ -0,0 +1,161 @@
+package com.kodedu.service.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.time.ZonedDateTime;
+
+/**
+ * Memory cache entry kept in direct memory chunks of a {@link SlabAllocator}.
+ * Chunks go back to the allocator when the entry is released, or when its last running read ends.
+ */
+public class OffHeapData implements CacheData {
+
+    private final String key;
+    private final ByteBuffer[] chunks;
+    private final int length;
+    private final SlabAllocator allocator;
+    private final ZonedDateTime lastModified;
+
+    private int readers;
+    private boolean evicted;
+    private boolean freed;
+
+    public OffHeapData(String key, ByteBuffer[] chunks, int length, SlabAllocator allocator) {
+        this.key = key;
+        this.chunks = chunks;
+        this.length = length;
+        this.allocator = allocator;
+        this.lastModified = ZonedDateTime.now();
+    }
+
+    private synchronized void acquire() throws IOException {
+        if (freed) {
+            throw new IOException("Cache data is evicted: " + key);
+        }
+        readers++;
+    }
+
+    private void releaseRead() {
+        boolean free;
+        synchronized (this) {
+            readers--;
+            free = evicted && readers == 0 && !freed;
+            freed |= free;
+        }
+        if (free) {
+            allocator.free(chunks);
+        }
+    }
+
+    @Override
+    public synchronized void pin() {
+        readers++;
+    }
+
+    @Override
+    public void unpin() {
+        releaseRead();
+    }
+
+    @Override
+    public void release() {
+        boolean free;
+        synchronized (this) {
+            evicted = true;
+            free = readers == 0 && !freed;
+            freed |= free;
+        }
+        if (free) {
+            allocator.free(chunks);
+        }
+    }
+
+    @Override
+    public byte[] readBytes() {
+        byte[] bytes = new byte[length];
+        try {
+            read(0, bytes, 0, length);
+        } catch (IOException e) {
+            return new byte[]{};
+        }
+        return bytes;
+    }
+
+    @Override
+    public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+        if (position >= this.length) {
+            return -1;
+        }
+
+        acquire();
+        try {
+            int chunkSize = allocator.getChunkSize();
+            int read = (int) Math.min(length, this.length - position);
+            int done = 0;
+            while (done < read) {
+                long current = position + done;
+                ByteBuffer chunk = chunks[(int) (current / chunkSize)].duplicate();
+                chunk.position((int) (current % chunkSize));
+                int count = Math.min(read - done, chunk.remaining());
+                chunk.get(buffer, offset + done, count);
+                done += count;
+            }
+            return read;
+        } finally {
+            releaseRead();
+        }
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        acquire();
+        try {
+            int chunkSize = allocator.getChunkSize();
+            long end = Math.min(this.length, position + count);
+            long written = 0;
+            for (long current = position; current < end; ) {
+                ByteBuffer chunk = chunks[(int) (current / chunkSize)].duplicate();
+                int start = (int) (current % chunkSize);
+                chunk.limit((int) Math.min(chunkSize, start + end - current)).position(start);
+                while (chunk.hasRemaining()) {
+                    written += target.write(chunk);
+                }
+                current = (current / chunkSize + 1) * chunkSize;
+            }
+            return written;
+        } finally {
+            releaseRead();
+        }
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public long lastModified() {
+        return lastModified.toEpochSecond();
+    }
+
+    @Override
+    public boolean inMemory() {
+        return true;
+    }
+
+    @Override
+    public boolean inDisk() {
+        return false;
+    }
+
+    @Override
+    public String key() {
+        return key;
+    }
+
+    @Override
+    public void removeFromDisk() {
+// no-op
+    }
+}
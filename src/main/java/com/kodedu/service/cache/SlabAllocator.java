@@ -0,0 +1,83 @@
+package com.kodedu.service.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Objects;
+
+/**
+ * Hands out fixed size chunks of direct memory carved from slabs, which are allocated lazily up to the capacity.
+ * Freed chunks are reused right away, so off-heap memory does not depend on the garbage collector.
+ */
+public class SlabAllocator {
+
+    private final int chunkSize;
+    private final int slabSize;
+    private final long capacity;
+    private final ArrayDeque<ByteBuffer> freeChunks = new ArrayDeque<>();
+    private long allocated;
+    private long used;
+
+    public SlabAllocator(long capacity, int slabSize, int chunkSize) {
+        int size = (int) Math.min(slabSize, capacity);
+        this.capacity = capacity;
+        this.slabSize = Math.max(chunkSize, size - size % chunkSize);
+        this.chunkSize = chunkSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int chunksFor(long length) {
+        return (int) Math.max(1, (length + chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * @return chunks holding a copy of the bytes, or null if there is not enough free capacity
+     */
+    public synchronized ByteBuffer[] allocate(byte[] bytes) {
+        int count = chunksFor(bytes.length);
+        while (freeChunks.size() < count && allocated + slabSize <= capacity) {
+            addSlab();
+        }
+        if (freeChunks.size() < count) {
+            return null;
+        }
+
+        ByteBuffer[] chunks = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            ByteBuffer chunk = freeChunks.pop();
+            int offset = i * chunkSize;
+            chunk.clear();
+            chunk.put(bytes, offset, Math.min(chunkSize, bytes.length - offset));
+            chunks[i] = chunk;
+        }
+        used += (long) count * chunkSize;
+        return chunks;
+    }
+
+    public synchronized void free(ByteBuffer[] chunks) {
+        for (ByteBuffer chunk : chunks) {
+            if (Objects.nonNull(chunk)) {
+                freeChunks.push(chunk);
+            }
+        }
+        used -= (long) chunks.length * chunkSize;
+    }
+
+    private void addSlab() {
+        ByteBuffer slab = ByteBuffer.allocateDirect(slabSize);
+        for (int offset = 0; offset < slabSize; offset += chunkSize) {
+            freeChunks.push(slab.slice(offset, chunkSize));
+        }
+        allocated += slabSize;
+    }
+
+    public synchronized long getUsed() {
+        return used;
+    }
+
+    public synchronized long getAllocated() {
+        return allocated;
+    }
+}
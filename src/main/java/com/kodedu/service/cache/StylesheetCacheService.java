@@ -0,0 +1,21 @@
+package com.kodedu.service.cache;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import java.nio.file.Path;
+
+/**
+ * Compiled XSLT stylesheets shared by the exports, recompiled when the stylesheet or one of its imports changes
+ */
+public interface StylesheetCacheService {
+    public final static String label = "core::service::cache::StylesheetCache";
+
+    public Templates getTemplates(Path stylesheet) throws TransformerConfigurationException;
+
+    // Transformers aren't thread safe, each export takes its own from the shared templates
+    public Transformer newTransformer(Path stylesheet) throws TransformerConfigurationException;
+
+    // Compiles the stylesheets in the background if warm up is enabled
+    public void warmUp(Path... stylesheets);
+}
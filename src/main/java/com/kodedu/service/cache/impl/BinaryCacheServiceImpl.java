@@ -1,48 +1,126 @@
 package com.kodedu.service.cache.impl;
 
 import com.kodedu.helper.IOHelper;
-import com.kodedu.other.Current;
 import com.kodedu.service.ThreadService;
 import com.kodedu.service.cache.BinaryCacheService;
 import com.kodedu.service.cache.CacheData;
-import com.kodedu.service.cache.InDiskData;
 import com.kodedu.service.cache.InMemoryDAta;
+import com.kodedu.service.cache.MappedDiskData;
+import com.kodedu.service.cache.OffHeapData;
+import com.kodedu.service.cache.SlabAllocator;
 
 import javafx.application.Platform;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
-import java.util.Collection;
-import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 /**
  * Created by usta on 12.06.2016.
+ * <p>
+ * Two tier cache. The memory tier is a segmented LRU: new entries go to the probation segment
+ * and are promoted to the protected segment on their first hit. Entries evicted from the memory tier
+ * are demoted to the disk tier, which evicts in LRU order when it exceeds its quota.
+ * With the off-heap option the memory tier keeps its bytes in direct memory slabs instead of the heap.
+ * Disk tier files are spilled into a per process directory under the configured spill directory.
  */
 @Component(BinaryCacheService.label)
 public class BinaryCacheServiceImpl implements BinaryCacheService {
 
-    private final long maximumSize = 50 * 1024 * 1024;
-    private final AtomicLong totalSize = new AtomicLong(0);
-    private final ConcurrentHashMap<String, CacheData> cache = new ConcurrentHashMap<>();
-    private final Current current;
+    private static final double PROTECTED_RATIO = 0.8;
+    private static final int SLAB_SIZE = 4 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final String SESSION_PREFIX = "session-";
+
+    private final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Entry> protect = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Entry> disk = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long probationSize;
+    private long protectedSize;
+    private long diskSize;
+
+    @Value("${application.cache.memory-size}")
+    private long memorySize;
+
+    @Value("${application.cache.disk-quota}")
+    private long diskQuota;
+
+    @Value("${application.cache.off-heap}")
+    private boolean offHeap;
+
+    @Value("${application.cache.off-heap-size}")
+    private long offHeapSize;
+
+    @Value("${application.cache.spill-dir}")
+    private String spillDir;
+
+    private Path sessionDir;
+    private long memoryBudget;
+    private SlabAllocator allocator;
+
     @Autowired
     private ThreadService threadService;
 
     private Logger logger = LoggerFactory.getLogger(BinaryCacheService.class);
 
-    @Autowired
-    public BinaryCacheServiceImpl(Current current) {
-        this.current = current;
+    @PostConstruct
+    public void init() {
+        Path spillRoot = IOHelper.getPath(spillDir);
+        IOHelper.createDirectories(spillRoot);
+        sessionDir = spillRoot.resolve(SESSION_PREFIX + ProcessHandle.current().pid());
+        IOHelper.createDirectories(sessionDir);
+        threadService.runTaskLater(() -> removeOrphans(spillRoot));
+
+        if (offHeap) {
+            allocator = new SlabAllocator(offHeapSize, SLAB_SIZE, CHUNK_SIZE);
+            memoryBudget = offHeapSize;
+        } else {
+            memoryBudget = memorySize;
+        }
+    }
+
+    // Spill directories of instances which are not running anymore
+    private void removeOrphans(Path spillRoot) {
+        try (Stream<Path> dirs = IOHelper.list(spillRoot)) {
+            dirs.filter(Files::isDirectory)
+                    .filter(dir -> dir.getFileName().toString().startsWith(SESSION_PREFIX))
+                    .filter(dir -> !dir.equals(sessionDir))
+                    .filter(dir -> {
+                        try {
+                            long pid = Long.parseLong(dir.getFileName().toString().substring(SESSION_PREFIX.length()));
+                            return !ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false);
+                        } catch (NumberFormatException e) {
+                            return true;
+                        }
+                    })
+                    .forEach(dir -> {
+                        logger.debug("Removing orphan cache spill directory {}", dir);
+                        IOHelper.deleteDirectory(dir);
+                    });
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        IOHelper.deleteDirectory(sessionDir);
     }
 
     @Override
@@ -56,96 +134,165 @@ public class BinaryCacheServiceImpl implements BinaryCacheService {
         }
 
         synchronized (this) {
+            remove(key);
 
-            if (hasCacheFor(bytes)) {
-                saveInMemory(key, bytes);
-            } else {
-                saveInDisk(key, bytes);
+            Entry entry = new Entry(new InMemoryDAta(key, bytes), bytes.length);
+            long size = Objects.nonNull(allocator) ? (long) allocator.chunksFor(bytes.length) * allocator.getChunkSize() : bytes.length;
+            if (size > memoryBudget) {
+                demote(entry);
+                return key;
+            }
+
+            evictMemory(size);
+
+            if (Objects.nonNull(allocator)) {
+                ByteBuffer[] chunks = allocator.allocate(bytes);
+                if (Objects.isNull(chunks)) {
+                    // Chunks of evicted entries may still be held by running reads
+                    demote(entry);
+                    return key;
+                }
+                entry = new Entry(new OffHeapData(key, chunks, bytes.length, allocator), size);
             }
 
+            probation.put(key, entry);
+            probationSize += entry.size;
+
             return key;
         }
     }
 
-    private void enLargeCache() {
-        threadService.runTaskLater(() -> {
-            Collection<CacheData> values = cache.values();
-            logger.debug("Enlarge cache: {}", values.size());
-            values
-                    .stream()
-                    .filter(e -> e.inDisk())
-                    .sorted((o1, o2) -> {
-                        Long l1 = o1.lastModified();
-                        Long l2 = o2.lastModified();
-                        return l1.compareTo(l2);
-                    }).limit(5)
-                    .forEach(cacheData -> {
-                        logger.debug("Larged: {}", cacheData.key());
-                        saveInMemory(cacheData.key(), cacheData.readBytes());
-                    });
-        });
-    }
-
-    private void shrinkCache() {
-        threadService.runTaskLater(() -> {
-            Collection<CacheData> values = cache.values();
-            logger.debug("Shrink cache: {}", values.size());
-            values
-                    .stream()
-                    .filter(e -> e.inMemory())
-                    .sorted((o1, o2) -> {
-                        Long l1 = o1.lastModified();
-                        Long l2 = o2.lastModified();
-                        return l2.compareTo(l1);
-                    }).limit(5)
-                    .forEach(cacheData -> {
-                        logger.debug("Shrinked: {}", cacheData.key());
-                        byte[] bytes = cacheData.readBytes();
-                        saveInDisk(cacheData.key(), bytes);
-                        totalSize.addAndGet(-bytes.length);
-                    });
-        });
+    private void remove(String key) {
+        Entry entry;
+        if (Objects.nonNull(entry = probation.remove(key))) {
+            probationSize -= entry.size;
+            entry.data.release();
+        } else if (Objects.nonNull(entry = protect.remove(key))) {
+            protectedSize -= entry.size;
+            entry.data.release();
+        } else if (Objects.nonNull(entry = disk.remove(key))) {
+            diskSize -= entry.size;
+            entry.data.removeFromDisk();
+        }
     }
 
-    private void saveInDisk(String key, byte[] bytes) {
-        threadService.runActionLater(() -> {
-            Path tempFile = IOHelper.createTempFile(current.currentPath().get().getParent(), ".png");
+    private void promote(String key, Entry entry) {
+        probation.remove(key);
+        probationSize -= entry.size;
+        protect.put(key, entry);
+        protectedSize += entry.size;
 
-//            System.out.println(tempFile.getParent());
-            IOHelper.writeToFile(tempFile, bytes, StandardOpenOption.CREATE);
+        long protectedLimit = (long) (memoryBudget * PROTECTED_RATIO);
+        Iterator<Map.Entry<String, Entry>> iterator = protect.entrySet().iterator();
+        while (protectedSize > protectedLimit && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            if (eldest.getValue() == entry) {
+                break;
+            }
+            iterator.remove();
+            protectedSize -= eldest.getValue().size;
+            probation.put(eldest.getKey(), eldest.getValue());
+            probationSize += eldest.getValue().size;
+        }
 
-            Optional.ofNullable(cache.get(key))
-                    .ifPresent(CacheData::removeFromDisk);
+        evictMemory(0);
+    }
 
-            cache.put(key, new InDiskData(key, tempFile));
-        });
+    private void evictMemory(long needed) {
+        while (probationSize + protectedSize + needed > memoryBudget) {
+            LinkedHashMap<String, Entry> segment = probation.isEmpty() ? protect : probation;
+            Iterator<Entry> iterator = segment.values().iterator();
+            if (!iterator.hasNext()) {
+                break;
+            }
+            Entry eldest = iterator.next();
+            iterator.remove();
+            if (segment == probation) {
+                probationSize -= eldest.size;
+            } else {
+                protectedSize -= eldest.size;
+            }
+            demote(eldest);
+        }
     }
 
-    private void saveInMemory(String key, byte[] bytes) {
+    private void demote(Entry evicted) {
+        String key = evicted.data.key();
+        byte[] bytes = evicted.data.readBytes();
+        evicted.data.release();
+
+        if (bytes.length > diskQuota) {
+            logger.debug("Dropped {} bytes of cache data for {}", bytes.length, key);
+            return;
+        }
+
+        // The entry is served from the heap until it is written to disk
+        Entry entry = new Entry(new InMemoryDAta(key, bytes), bytes.length);
+        disk.put(key, entry);
+        diskSize += entry.size;
+        evictDisk();
 
-        Optional.ofNullable(cache.get(key))
-                .ifPresent(CacheData::removeFromDisk);
+        threadService.runTaskLater(() -> {
+            synchronized (this) {
+                if (disk.get(key) != entry) {
+                    return;
+                }
+            }
 
-        Optional.ofNullable(cache.get(key))
-                .filter(e -> e.inMemory())
-                .map(e -> e.length())
-                .ifPresent(aLong -> totalSize.addAndGet(-aLong));
+            Path spillFile;
+            try {
+                // No fsync, spilled data can always be rendered again
+                spillFile = Files.createTempFile(sessionDir, "cache", extension(key));
+                Files.write(spillFile, bytes, StandardOpenOption.WRITE);
+            } catch (Exception e) {
+                logger.error("Problem occured while spilling cache data for {}", key, e);
+                return;
+            }
 
-        cache.put(key, new InMemoryDAta(key, bytes));
-        totalSize.addAndGet(bytes.length);
+            synchronized (this) {
+                if (disk.get(key) == entry) {
+                    disk.put(key, new Entry(new MappedDiskData(key, spillFile), entry.size));
+                } else {
+                    IOHelper.deleteIfExists(spillFile);
+                }
+            }
+        });
     }
 
-    private boolean hasCacheFor(byte[] bytes) {
-        return maximumSize > (getTotalSize() + bytes.length);
+    private String extension(String key) {
+        String name = key.substring(key.lastIndexOf('/') + 1);
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? ".bin" : name.substring(dot);
     }
 
-    private long getTotalSize() {
-        return totalSize.get();
+    private void evictDisk() {
+        Iterator<Entry> iterator = disk.values().iterator();
+        while (diskSize > diskQuota && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            diskSize -= eldest.size;
+            eldest.data.removeFromDisk();
+        }
     }
 
     @Override
-    public CacheData getCacheData(String key) {
-        return cache.get(key);
+    public synchronized CacheData getCacheData(String key) {
+        Entry entry;
+        if (Objects.isNull(entry = protect.get(key)) && Objects.nonNull(entry = probation.get(key))) {
+            // Pinned before promotion, which may evict it right away
+            entry.data.pin();
+            promote(key, entry);
+            return entry.data;
+        }
+        if (Objects.isNull(entry)) {
+            entry = disk.get(key);
+        }
+        if (Objects.isNull(entry)) {
+            return null;
+        }
+        // Eviction takes the same lock, so the entry can't be released before it is pinned
+        entry.data.pin();
+        return entry.data;
     }
 
     @Override
@@ -160,7 +307,29 @@ public class BinaryCacheServiceImpl implements BinaryCacheService {
     }
 
     @Override
-    public boolean hasCache(String key) {
-        return cache.containsKey(key);
+    public synchronized boolean hasCache(String key) {
+        return probation.containsKey(key) || protect.containsKey(key) || disk.containsKey(key);
+    }
+
+    public synchronized long getMemoryUsage() {
+        return probationSize + protectedSize;
+    }
+
+    public long getOffHeapAllocated() {
+        return Objects.nonNull(allocator) ? allocator.getAllocated() : 0;
+    }
+
+    public synchronized long getDiskUsage() {
+        return diskSize;
+    }
+
+    private static class Entry {
+        private final CacheData data;
+        private final long size;
+
+        private Entry(CacheData data, long size) {
+            this.data = data;
+            this.size = size;
+        }
     }
 }
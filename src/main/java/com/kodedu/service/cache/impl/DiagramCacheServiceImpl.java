@@ -0,0 +1,267 @@
+package com.kodedu.service.cache.impl;
+
+import com.kodedu.config.ExtensionConfigBean;
+import com.kodedu.helper.IOHelper;
+import com.kodedu.service.ThreadService;
+import com.kodedu.service.cache.BinaryCacheService;
+import com.kodedu.service.cache.DiagramCacheService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Stores rendered diagrams under the user config folder, named by the SHA-256 of their inputs,
+ * so they survive restarts and are shared by every document rendering the same diagram.
+ */
+@Component(DiagramCacheService.label)
+public class DiagramCacheServiceImpl implements DiagramCacheService {
+
+    private final Logger logger = LoggerFactory.getLogger(DiagramCacheService.class);
+
+    private final ExtensionConfigBean extensionConfigBean;
+    private final BinaryCacheService binaryCacheService;
+    @Autowired
+    private ThreadService threadService;
+
+    @Value("${application.config.folder}")
+    private String userHomeConfigFolder;
+
+    @Value("${application.diagram.cache-dir}")
+    private String cacheDirName;
+
+    @Value("${application.diagram.cache-size}")
+    private long cacheSize;
+
+    private Path cacheDir;
+    private final AtomicLong totalSize = new AtomicLong();
+    private final AtomicBoolean trimming = new AtomicBoolean();
+
+    @Autowired
+    public DiagramCacheServiceImpl(ExtensionConfigBean extensionConfigBean, BinaryCacheService binaryCacheService) {
+        this.extensionConfigBean = extensionConfigBean;
+        this.binaryCacheService = binaryCacheService;
+    }
+
+    @PostConstruct
+    public void init() {
+        cacheDir = IOHelper.getPath(System.getProperty("user.home"))
+                .resolve(userHomeConfigFolder)
+                .resolve(cacheDirName);
+        IOHelper.createDirectories(cacheDir);
+        threadService.runTaskLater(() -> {
+            // Left over from writes interrupted by a previous shutdown
+            try (Stream<Path> files = IOHelper.list(cacheDir)) {
+                files.filter(file -> file.getFileName().toString().endsWith(".tmp"))
+                        .forEach(IOHelper::deleteIfExists);
+            }
+            trim();
+        });
+    }
+
+    @Override
+    public String hash(String type, String imageTarget, Object... inputs) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, type);
+            update(digest, imageTarget.endsWith(".svg") ? "svg" : "png");
+            update(digest, extensionConfigBean.getDefaultImageDpi());
+            update(digest, extensionConfigBean.getDefaultImageScale());
+            update(digest, extensionConfigBean.getDefaultImageZoom());
+            for (Object input : inputs) {
+                update(digest, input);
+            }
+
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void update(MessageDigest digest, Object input) {
+        // Length prefixed, so that ("ab", "c") and ("a", "bc") hash differently
+        byte[] bytes = String.valueOf(input).getBytes(StandardCharsets.UTF_8);
+        digest.update((bytes.length + ":").getBytes(StandardCharsets.UTF_8));
+        digest.update(bytes);
+    }
+
+    @Override
+    public boolean restore(String hash, Path root, String imageTarget) {
+        Path stored = cacheDir.resolve(hash);
+        if (!Files.isRegularFile(stored)) {
+            return false;
+        }
+
+        try {
+            Files.setLastModifiedTime(stored, FileTime.fromMillis(System.currentTimeMillis()));
+
+            if (isCachedResource(imageTarget)) {
+                binaryCacheService.putBinary(imageTarget, Files.readAllBytes(stored));
+            } else {
+                Path target = root.resolve(imageTarget);
+                if (Files.isRegularFile(target) && Files.mismatch(stored, target) == -1) {
+                    return true;
+                }
+                IOHelper.createDirectories(target.getParent());
+                Files.copy(stored, target, REPLACE_EXISTING);
+            }
+
+            logger.debug("Diagram {} is restored from cache for {}", hash, imageTarget);
+            return true;
+        } catch (IOException e) {
+            logger.error("Problem occured while restoring cached diagram {}", hash, e);
+            return false;
+        }
+    }
+
+    @Override
+    public void write(String hash, Path root, String imageTarget, BufferedImage image) {
+        try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+            ImageIO.write(image, "png", outputStream);
+            byte[] bytes = outputStream.toByteArray();
+            if (imageTarget.endsWith(".svg")) {
+                bytes = embedInSvg(image, bytes);
+            }
+            write(hash, root, imageTarget, bytes);
+        } catch (IOException e) {
+            logger.error("Problem occured while encoding diagram for {}", imageTarget, e);
+        }
+    }
+
+    // Svg targets of diagrams which have no vector output get the png embedded
+    private byte[] embedInSvg(BufferedImage image, byte[] png) {
+        String svg = String.format("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                        "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"%1$d\" height=\"%2$d\" viewBox=\"0 0 %1$d %2$d\">" +
+                        "<image width=\"%1$d\" height=\"%2$d\" href=\"data:image/png;base64,%3$s\"/></svg>",
+                image.getWidth(), image.getHeight(), Base64.getEncoder().encodeToString(png));
+        return svg.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void write(String hash, Path root, String imageTarget, byte[] bytes) {
+        writeTarget(root, imageTarget, bytes);
+        store(hash, bytes);
+    }
+
+    @Override
+    public void writeTarget(Path root, String imageTarget, byte[] bytes) {
+        if (isCachedResource(imageTarget)) {
+            binaryCacheService.putBinary(imageTarget, bytes);
+        } else {
+            Path target = root.resolve(imageTarget);
+            IOHelper.createDirectories(target.getParent());
+            IOHelper.writeToFile(target, bytes, CREATE, WRITE, TRUNCATE_EXISTING);
+        }
+    }
+
+    private void store(String hash, byte[] bytes) {
+        Path stored = cacheDir.resolve(hash);
+        if (Files.exists(stored)) {
+            return;
+        }
+
+        try {
+            // Readers never see a partially written diagram
+            Path temp = Files.createTempFile(cacheDir, hash, ".tmp");
+            Files.write(temp, bytes, WRITE, TRUNCATE_EXISTING);
+            Files.move(temp, stored, ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.error("Problem occured while storing diagram {}", hash, e);
+            return;
+        }
+
+        if (totalSize.addAndGet(bytes.length) > cacheSize) {
+            threadService.runTaskLater(this::trim);
+        }
+    }
+
+    private void trim() {
+        if (!trimming.compareAndSet(false, true)) {
+            return;
+        }
+
+        try (Stream<Path> stream = IOHelper.list(cacheDir)) {
+            // Times are read once, restore touches them while the files are sorted
+            List<CachedFile> files = stream
+                    .filter(file -> !file.getFileName().toString().endsWith(".tmp"))
+                    .map(this::cachedFile)
+                    .filter(Objects::nonNull)
+                    .sorted(Comparator.comparingLong(file -> file.lastModified))
+                    .collect(Collectors.toList());
+
+            long size = 0;
+            for (CachedFile file : files) {
+                size += file.size;
+            }
+
+            // Least recently used diagrams first
+            for (CachedFile file : files) {
+                if (size <= cacheSize) {
+                    break;
+                }
+                if (IOHelper.deleteIfExists(file.path).isEmpty()) {
+                    size -= file.size;
+                }
+            }
+
+            totalSize.set(size);
+        } finally {
+            trimming.set(false);
+        }
+    }
+
+    private CachedFile cachedFile(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return attributes.isRegularFile() ? new CachedFile(path, attributes.lastModifiedTime().toMillis(), attributes.size()) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private boolean isCachedResource(String imageTarget) {
+        return Objects.nonNull(imageTarget) && imageTarget.contains("/afx/cache");
+    }
+
+    private static class CachedFile {
+        private final Path path;
+        private final long lastModified;
+        private final long size;
+
+        private CachedFile(Path path, long lastModified, long size) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.kodedu.service.cache.impl;
+
+import com.kodedu.service.ThreadService;
+import com.kodedu.service.cache.StylesheetCacheService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the compiled templates of each stylesheet, so the DocBook stylesheets are compiled once instead of on every export.
+ * The files imported while compiling are recorded with their modification times, a change in any of them recompiles the stylesheet.
+ */
+@Component(StylesheetCacheService.label)
+public class StylesheetCacheServiceImpl implements StylesheetCacheService {
+
+    private final Logger logger = LoggerFactory.getLogger(StylesheetCacheService.class);
+
+    private final ThreadService threadService;
+    private final boolean warmUp;
+
+    private final Map<Path, CompiledStylesheet> stylesheets = new ConcurrentHashMap<>();
+    private final Map<Path, Object> locks = new ConcurrentHashMap<>();
+
+    @Autowired
+    public StylesheetCacheServiceImpl(ThreadService threadService, @Value("${application.xslt.warm-up}") boolean warmUp) {
+        this.threadService = threadService;
+        this.warmUp = warmUp;
+    }
+
+    @Override
+    public Templates getTemplates(Path stylesheet) throws TransformerConfigurationException {
+        Path path = stylesheet.toAbsolutePath().normalize();
+
+        CompiledStylesheet compiled = stylesheets.get(path);
+        if (Objects.nonNull(compiled) && compiled.isCurrent()) {
+            return compiled.templates;
+        }
+
+        // An export waits for the warm up of the same stylesheet instead of compiling it twice
+        synchronized (locks.computeIfAbsent(path, p -> new Object())) {
+            compiled = stylesheets.get(path);
+            if (Objects.nonNull(compiled) && compiled.isCurrent()) {
+                return compiled.templates;
+            }
+
+            compiled = compile(path);
+            stylesheets.put(path, compiled);
+            return compiled.templates;
+        }
+    }
+
+    @Override
+    public Transformer newTransformer(Path stylesheet) throws TransformerConfigurationException {
+        return getTemplates(stylesheet).newTransformer();
+    }
+
+    @Override
+    public void warmUp(Path... stylesheets) {
+        if (!warmUp) {
+            return;
+        }
+
+        for (Path stylesheet : stylesheets) {
+            threadService.runTaskLater(() -> {
+                try {
+                    getTemplates(stylesheet);
+                } catch (Exception e) {
+                    logger.error("Problem occured while compiling stylesheet {}", stylesheet, e);
+                }
+            });
+        }
+    }
+
+    private CompiledStylesheet compile(Path path) throws TransformerConfigurationException {
+        long start = System.currentTimeMillis();
+
+        Map<Path, FileTime> files = new HashMap<>();
+        record(files, path);
+
+        TransformerFactory factory = TransformerFactory.newInstance();
+        factory.setURIResolver((href, base) -> {
+            try {
+                URI uri = Objects.isNull(base) || base.isEmpty() ? URI.create(href) : URI.create(base).resolve(href);
+                if ("file".equals(uri.getScheme())) {
+                    record(files, Paths.get(uri));
+                }
+            } catch (RuntimeException e) {
+                // Not a local file, it can't change under us
+            }
+            // The factory resolves the import itself
+            return null;
+        });
+
+        Templates templates = factory.newTemplates(new StreamSource(path.toFile()));
+        logger.debug("Stylesheet {} with {} files compiled in {} ms", path, files.size(), System.currentTimeMillis() - start);
+
+        return new CompiledStylesheet(templates, files);
+    }
+
+    private static void record(Map<Path, FileTime> files, Path file) {
+        files.computeIfAbsent(file.normalize(), StylesheetCacheServiceImpl::modifiedTime);
+    }
+
+    private static FileTime modifiedTime(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static class CompiledStylesheet {
+        private final Templates templates;
+        private final Map<Path, FileTime> files;
+
+        private CompiledStylesheet(Templates templates, Map<Path, FileTime> files) {
+            this.templates = templates;
+            this.files = files;
+        }
+
+        private boolean isCurrent() {
+            for (Map.Entry<Path, FileTime> entry : files.entrySet()) {
+                if (!entry.getValue().equals(modifiedTime(entry.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -3,24 +3,27 @@ package com.kodedu.service.convert.docbook;
 import com.kodedu.config.DocbookConfigBean;
 import com.kodedu.controller.TextChangeEvent;
 import com.kodedu.engine.AsciidocConverterProvider;
-import com.kodedu.helper.IOHelper;
 import com.kodedu.helper.XMLHelper;
 import com.kodedu.other.Current;
 import com.kodedu.service.ThreadService;
 import com.kodedu.service.convert.DocumentConverter;
-import org.joox.Match;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.Source;
+import javax.xml.transform.sax.SAXSource;
 import java.io.StringReader;
 import java.nio.file.Path;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
-import static org.joox.JOOX.$;
-
 /**
  * Created by usta on 19.07.2014.
  */
@@ -47,9 +50,24 @@ public class DocBookConverter implements DocbookTraversable, DocumentConverter<S
 
     @Override
     public void convert(boolean askPath, Consumer<String>... nextStep) {
+        render((rendered, systemId) -> {
+            String result = XMLHelper.sourceToString(fixedSource(rendered, systemId), false);
+//            result = result.replace("00HEADER00COLON00", ":");
+
+            for (Consumer<String> step : nextStep) {
+                step.accept(result);
+            }
+        });
+    }
+
+    // The fixed docbook is read by the consumer's transformer, without a serialised copy in between
+    public void convertToSource(Consumer<Source> nextStep) {
+        render((rendered, systemId) -> nextStep.accept(fixedSource(rendered, systemId)));
+    }
+
+    private void render(BiConsumer<String, String> nextStep) {
 
         Path currentTabPath = current.currentPath().get();
-        Path currentTabPathDir = currentTabPath.getParent();
 
         String asciidoc = current.currentEditorValue();
 
@@ -63,29 +81,24 @@ public class DocBookConverter implements DocbookTraversable, DocumentConverter<S
             if (!validated)
                 return;
 
-            StringReader bookReader = new StringReader(rendered);
-            Match rootDocument = IOHelper.$(new InputSource(bookReader));
-            bookReader.close();
-
-//            // makes figure centering
-            rootDocument.find("figure").find("imagedata").attr("align", "center");
-
-            // remove callout's duplicated refs and pick last
-            rootDocument.find("callout").forEach(elem -> {
-                String arearefs = $(elem).attr("arearefs");
-                String[] cos = arearefs.split(" ");
-                if (cos.length > 1)
-                    $(elem).attr("arearefs", cos[cos.length - 1]);
-            });
-
-            String result = XMLHelper.nodeToString(rootDocument.document(), false);
-//            result = result.replace("00HEADER00COLON00", ":");
-
-            for (Consumer<String> step : nextStep) {
-                step.accept(result);
-            }
+            // Relative paths in the book are resolved against the document folder
+            nextStep.accept(rendered, currentTabPath.toUri().toASCIIString());
         });
     }
 
+    // Figure centering and callout fix-ups run as a SAX filter while the source is read
+    private Source fixedSource(String rendered, String systemId) {
+        try {
+            SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+            parserFactory.setNamespaceAware(true);
+            XMLReader reader = parserFactory.newSAXParser().getXMLReader();
+            InputSource inputSource = new InputSource(new StringReader(rendered));
+            inputSource.setSystemId(systemId);
+            return new SAXSource(new DocbookFixupFilter(reader), inputSource);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IllegalStateException("Problem occured while creating Docbook parser", e);
+        }
+    }
+
 
 }
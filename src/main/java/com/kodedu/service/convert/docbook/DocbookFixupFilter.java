@@ -0,0 +1,67 @@
+package com.kodedu.service.convert.docbook;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+import java.util.Objects;
+
+/**
+ * Applies the DocBook fix-ups for the stylesheets while the document is parsed, so no DOM of the book is built.
+ * Images in figures are centered and callouts keep only their last area reference.
+ */
+public class DocbookFixupFilter extends XMLFilterImpl {
+
+    private int figureDepth;
+
+    public DocbookFixupFilter(XMLReader parent) {
+        super(parent);
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+        String name = name(localName, qName);
+
+        if ("figure".equals(name)) {
+            figureDepth++;
+        } else if ("imagedata".equals(name) && figureDepth > 0) {
+            atts = withAttribute(atts, "align", "center");
+        } else if ("callout".equals(name)) {
+            String arearefs = atts.getValue("", "arearefs");
+            if (Objects.nonNull(arearefs)) {
+                String[] cos = arearefs.split(" ");
+                if (cos.length > 1) {
+                    atts = withAttribute(atts, "arearefs", cos[cos.length - 1]);
+                }
+            }
+        }
+
+        super.startElement(uri, localName, qName, atts);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        if ("figure".equals(name(localName, qName))) {
+            figureDepth--;
+        }
+
+        super.endElement(uri, localName, qName);
+    }
+
+    private static String name(String localName, String qName) {
+        return Objects.isNull(localName) || localName.isEmpty() ? qName : localName;
+    }
+
+    private static Attributes withAttribute(Attributes atts, String name, String value) {
+        AttributesImpl attributes = new AttributesImpl(atts);
+        int index = attributes.getIndex("", name);
+        if (index < 0) {
+            attributes.addAttribute("", name, name, "CDATA", value);
+        } else {
+            attributes.setValue(index, value);
+        }
+        return attributes;
+    }
+}
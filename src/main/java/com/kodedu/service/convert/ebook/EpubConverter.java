@@ -7,6 +7,7 @@ import com.kodedu.other.ExtensionFilters;
 import com.kodedu.service.DirectoryService;
 import com.kodedu.service.PathResolverService;
 import com.kodedu.service.ThreadService;
+import com.kodedu.service.cache.StylesheetCacheService;
 import com.kodedu.service.convert.docbook.DocBookConverter;
 import com.kodedu.service.ui.IndikatorService;
 import org.joox.Match;
@@ -16,7 +17,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import java.io.FileOutputStream;
@@ -53,12 +53,14 @@ public class EpubConverter {
     private final IndikatorService indikatorService;
     private final DocBookConverter docBookConverter;
     private final PathResolverService pathResolverService;
+    private final StylesheetCacheService stylesheetCacheService;
 
     private Path epubPath;
 
     @Autowired
     public EpubConverter(final ApplicationController asciiDocController, final Current current, final ThreadService threadService,
-                         final DirectoryService directoryService, final IndikatorService indikatorService, final DocBookConverter docBookConverter, PathResolverService pathResolverService) {
+                         final DirectoryService directoryService, final IndikatorService indikatorService, final DocBookConverter docBookConverter, PathResolverService pathResolverService,
+                         final StylesheetCacheService stylesheetCacheService) {
         this.asciiDocController = asciiDocController;
         this.current = current;
         this.threadService = threadService;
@@ -66,6 +68,7 @@ public class EpubConverter {
         this.indikatorService = indikatorService;
         this.docBookConverter = docBookConverter;
         this.pathResolverService = pathResolverService;
+        this.stylesheetCacheService = stylesheetCacheService;
     }
 
     public Path produceEpub3Temp() {
@@ -100,8 +103,7 @@ public class EpubConverter {
                 Path epubTemp = Files.createTempDirectory("epub");
 
 
-                TransformerFactory factory = TransformerFactory.newInstance();
-                Transformer transformer = factory.newTransformer(new StreamSource(configPath.resolve("docbook/epub3/chunk.xsl").toFile()));
+                Transformer transformer = stylesheetCacheService.newTransformer(configPath.resolve("docbook/epub3/chunk.xsl"));
 
                 docBookConverter.convert(false, docbook -> {
 
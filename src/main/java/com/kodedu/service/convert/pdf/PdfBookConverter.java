@@ -1,12 +1,12 @@
 package com.kodedu.service.convert.pdf;
 
 import com.kodedu.controller.ApplicationController;
-import com.kodedu.helper.IOHelper;
 import com.kodedu.other.Current;
 import com.kodedu.other.ExtensionFilters;
 import com.kodedu.service.DirectoryService;
 import com.kodedu.service.PathResolverService;
 import com.kodedu.service.ThreadService;
+import com.kodedu.service.cache.StylesheetCacheService;
 import com.kodedu.service.convert.DocumentConverter;
 import com.kodedu.service.convert.docbook.DocBookConverter;
 import com.kodedu.service.ui.IndikatorService;
@@ -20,21 +20,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.xml.transform.Result;
-import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.sax.SAXResult;
-import javax.xml.transform.stream.StreamSource;
 import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.io.OutputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Objects;
 import java.util.function.Consumer;
 
-import static java.nio.file.StandardOpenOption.*;
-
 /**
  * Created by usta on 09.04.2015.
  */
@@ -50,12 +44,14 @@ public class PdfBookConverter implements DocumentConverter<String> {
     private final DirectoryService directoryService;
     private final Current current;
     private final PathResolverService pathResolverService;
+    private final StylesheetCacheService stylesheetCacheService;
     private FopFactory fopFactory;
 
     @Autowired
     public PdfBookConverter(final ApplicationController asciiDocController, final DocBookConverter docBookConverter,
                             final IndikatorService indikatorService,
-                            final ThreadService threadService, final DirectoryService directoryService, final Current current, PathResolverService pathResolverService) {
+                            final ThreadService threadService, final DirectoryService directoryService, final Current current, PathResolverService pathResolverService,
+                            final StylesheetCacheService stylesheetCacheService) {
         this.asciiDocController = asciiDocController;
         this.docBookConverter = docBookConverter;
         this.indikatorService = indikatorService;
@@ -63,32 +59,27 @@ public class PdfBookConverter implements DocumentConverter<String> {
         this.directoryService = directoryService;
         this.current = current;
         this.pathResolverService = pathResolverService;
+        this.stylesheetCacheService = stylesheetCacheService;
     }
 
 
     @Override
     public void convert(boolean askPath, Consumer<String>... nextStep) {
 
-        final Path currentTabPath = current.currentPath().get();
-        final Path currentTabPathDir = currentTabPath.getParent();
         final Path configPath = asciiDocController.getConfigPath();
 
         threadService.runActionLater(() -> {
 
             final Path pdfPath = directoryService.getSaveOutputPath(ExtensionFilters.PDF, askPath);
 
-            docBookConverter.convert(false, docbook -> {
+            docBookConverter.convertToSource(docbook -> {
 
                 indikatorService.startProgressBar();
                 logger.debug("PDF conversion started");
 
-                final Path docbookTempfile = IOHelper.createTempFile(currentTabPathDir, ".xml");
-                IOHelper.writeToFile(docbookTempfile, docbook, CREATE, WRITE, TRUNCATE_EXISTING);
-
                 try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(pdfPath.toFile()));) {
                     // Setup XSLT
-                    TransformerFactory factory = TransformerFactory.newInstance();
-                    Transformer transformer = factory.newTransformer(new StreamSource(configPath.resolve("docbook-config/fo-pdf.xsl").toFile()));
+                    Transformer transformer = stylesheetCacheService.newTransformer(configPath.resolve("docbook-config/fo-pdf.xsl"));
                     transformer.setParameter("highlight.xslthl.config", configPath.resolve("docbook-config/xslthl-config.xml").toUri().toASCIIString());
                     transformer.setParameter("admon.graphics.path", configPath.resolve("docbook/images/").toUri().toASCIIString());
                     transformer.setParameter("callout.graphics.path", configPath.resolve("docbook/images/callouts/").toUri().toASCIIString());
@@ -99,16 +90,11 @@ public class PdfBookConverter implements DocumentConverter<String> {
 
                     Fop fop = fopFactory.newFop(MimeConstants.MIME_PDF, outputStream);
 
-                    // Setup input for XSLT transformation
-                    Source src = new StreamSource(docbookTempfile.toFile());
-
                     // Resulting SAX events (the generated FO) must be piped through to FOP
                     Result res = new SAXResult(fop.getDefaultHandler());
 
-                    // Step 6: Start XSLT transformation and FOP processing
-                    transformer.transform(src, res);
-
-                    Files.deleteIfExists(docbookTempfile);
+                    // Step 6: Start XSLT transformation and FOP processing, the docbook is parsed as it is transformed
+                    transformer.transform(docbook, res);
 
                     // Result processing
                     FormattingResults foResults = fop.getResults();
@@ -0,0 +1,15 @@
+package com.kodedu.service.extension;
+
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+public interface DiagramSchedulerService {
+
+    public final static String label = "core::service::extension::DiagramScheduler";
+
+    // Queues a render by its source line, a newer request for the same image target replaces the queued one
+    public void schedule(String type, String imageTarget, String hash, int line, Supplier<CompletionStage<?>> render);
+
+    // Lines are 1 based, queued renders are ordered again around the new viewport
+    public void updateViewport(int firstLine, int lastLine, int cursorLine);
+}
@@ -4,6 +4,8 @@ import javafx.scene.web.WebView;
 import netscape.javascript.JSObject;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Created by usta on 25.12.2014.
  */
@@ -12,12 +14,14 @@ public interface MathJaxService {
 
     public void reload();
 
-    public void processFormula(String formula, String imagesDir, String imageTarget);
+    // Completes when the formula image is written, or its typesetting failed
+    public CompletableFuture<?> processFormula(String formula, String imagesDir, String imageTarget);
 
     public JSObject getWindow();
 
     public WebView getWebView();
 
-    public void snapshotFormula(String formula, String imagesDir, String imageTarget);
+    // Stores the formulas of a batch, the report holds the batch id and a JSON array of bounding boxes by image target
+    public void snapshotFormulas(String json);
 
 }
@@ -1,6 +1,9 @@
 package com.kodedu.service.extension;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface MermaidService extends DefaultSettings {
     public final static String label = "core::service::extension::Mermaid";
-    public void createMermaidDiagram(String mermaidContent, String type, String imagesDir, String imageTarget, String nodename, boolean rerender);
+    // Completes when the diagram is written, or its rendering failed
+    public CompletableFuture<?> createMermaidDiagram(String mermaidContent, String type, String imagesDir, String imageTarget, String nodename, boolean rerender);
 }
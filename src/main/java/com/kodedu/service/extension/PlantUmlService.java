@@ -1,9 +1,12 @@
 package com.kodedu.service.extension;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Created by usta on 25.12.2014.
  */
 public interface PlantUmlService {
     public final static String label = "core::service::extension::PlantUml";
-    public void plantUml(String uml, String type, String imagesDir, String imageTarget, String nodename, String options);
+    // Completes when the diagram is written, or its rendering failed
+    public CompletableFuture<?> plantUml(String uml, String type, String imagesDir, String imageTarget, String nodename, String options);
 }
@@ -1,5 +1,6 @@
 package com.kodedu.service.extension.chart;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -9,4 +10,14 @@ public interface ChartBuilderService {
 
     public boolean chartBuild(String chartContent, String imagesDir, String imageTarget, Map<String, String> optMap);
 
+    // Series are read and downsampled off the FX thread, the source identifies them in the diagram cache
+    public default boolean chartBuild(List<ChartSeries> seriesList, String source, String imagesDir, String imageTarget, Map<String, String> optMap) {
+        return chartBuild(ChartSeries.format(seriesList), imagesDir, imageTarget, optMap);
+    }
+
+    // Only charts with a number x axis are reduced to their pixel width, pie slices and categories are never dropped
+    public default boolean isDownsampled() {
+        return false;
+    }
+
 }
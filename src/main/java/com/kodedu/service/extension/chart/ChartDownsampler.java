@@ -0,0 +1,131 @@
+package com.kodedu.service.extension.chart;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reduces chart rows to about the number of pixels the chart has, keeping the visual shape of the series.
+ * The x value is used when it is numeric, otherwise the row index. Rows with a non numeric y value
+ * can't be compared, so such series are returned as they are.
+ */
+public class ChartDownsampler {
+
+    // Largest triangle three buckets, keeps the row which forms the largest triangle with its neighbour buckets
+    public static List<String[]> lttb(List<String[]> rows, int threshold) {
+        int size = rows.size();
+        if (threshold < 3 || size <= threshold) {
+            return rows;
+        }
+
+        double[] y = values(rows, 1);
+        if (y == null) {
+            return rows;
+        }
+        double[] x = xValues(rows);
+
+        List<String[]> sampled = new ArrayList<>(threshold);
+        sampled.add(rows.get(0));
+
+        double every = (double) (size - 2) / (threshold - 2);
+        int a = 0;
+
+        for (int i = 0; i < threshold - 2; i++) {
+            int nextStart = (int) Math.floor((i + 1) * every) + 1;
+            int nextEnd = Math.min((int) Math.floor((i + 2) * every) + 1, size);
+
+            double avgX = 0;
+            double avgY = 0;
+            for (int j = nextStart; j < nextEnd; j++) {
+                avgX += x[j];
+                avgY += y[j];
+            }
+            int nextLength = nextEnd - nextStart;
+            avgX /= nextLength;
+            avgY /= nextLength;
+
+            int start = (int) Math.floor(i * every) + 1;
+            int end = (int) Math.floor((i + 1) * every) + 1;
+
+            double maxArea = -1;
+            int selected = start;
+            for (int j = start; j < end; j++) {
+                double area = Math.abs((x[a] - avgX) * (y[j] - y[a]) - (x[a] - x[j]) * (avgY - y[a]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    selected = j;
+                }
+            }
+
+            sampled.add(rows.get(selected));
+            a = selected;
+        }
+
+        sampled.add(rows.get(size - 1));
+        return sampled;
+    }
+
+    // Keeps the lowest and the highest row of each bucket in their original order
+    public static List<String[]> minMax(List<String[]> rows, int threshold) {
+        int size = rows.size();
+        int buckets = threshold / 2;
+        if (buckets < 1 || size <= threshold) {
+            return rows;
+        }
+
+        double[] y = values(rows, 1);
+        if (y == null) {
+            return rows;
+        }
+
+        List<String[]> sampled = new ArrayList<>(buckets * 2);
+        double every = (double) size / buckets;
+
+        for (int i = 0; i < buckets; i++) {
+            int start = (int) Math.floor(i * every);
+            int end = Math.min((int) Math.floor((i + 1) * every), size);
+
+            int min = start;
+            int max = start;
+            for (int j = start + 1; j < end; j++) {
+                if (y[j] < y[min]) {
+                    min = j;
+                }
+                if (y[j] > y[max]) {
+                    max = j;
+                }
+            }
+
+            sampled.add(rows.get(Math.min(min, max)));
+            if (min != max) {
+                sampled.add(rows.get(Math.max(min, max)));
+            }
+        }
+
+        return sampled;
+    }
+
+    private static double[] xValues(List<String[]> rows) {
+        double[] x = values(rows, 0);
+        if (x != null) {
+            return x;
+        }
+
+        x = new double[rows.size()];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = i;
+        }
+        return x;
+    }
+
+    private static double[] values(List<String[]> rows, int column) {
+        double[] values = new double[rows.size()];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = Double.parseDouble(rows.get(i)[column].trim());
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return values;
+    }
+}
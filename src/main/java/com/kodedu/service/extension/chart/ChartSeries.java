@@ -0,0 +1,52 @@
+package com.kodedu.service.extension.chart;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Rows of a chart series as split csv parts: name, value and an optional color.
+ * Series are shared through the series cache, so they are not modified after reading.
+ */
+public class ChartSeries {
+
+    private final String name;
+    private final List<String[]> rows;
+
+    public ChartSeries(String name, List<String[]> rows) {
+        this.name = name;
+        this.rows = Collections.unmodifiableList(rows);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String[]> getRows() {
+        return rows;
+    }
+
+    public ChartSeries withRows(List<String[]> rows) {
+        return new ChartSeries(name, rows);
+    }
+
+    // Chart content with the same series, for the builders which parse content themselves
+    public static String format(List<ChartSeries> seriesList) {
+        StringBuilder content = new StringBuilder();
+        for (ChartSeries series : seriesList) {
+            if (Objects.nonNull(series.getName())) {
+                content.append("//").append(series.getName()).append('\n');
+            }
+            for (String[] row : series.getRows()) {
+                content.append(String.join(",", row)).append('\n');
+            }
+        }
+        return content.toString();
+    }
+
+    @Override
+    public String toString() {
+        return rows.stream().map(row -> String.join(",", row)).collect(Collectors.joining("\n", "//" + name + "\n", ""));
+    }
+}
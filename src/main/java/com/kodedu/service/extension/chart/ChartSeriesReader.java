@@ -0,0 +1,63 @@
+package com.kodedu.service.extension.chart;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Reads chart content line by line, a line starting with // begins a new named series.
+ * Lines with less than two values are skipped and series without values are dropped.
+ */
+public class ChartSeriesReader {
+
+    public static List<ChartSeries> read(String content) {
+        try {
+            return read(new StringReader(content));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static List<ChartSeries> read(Reader reader) throws IOException {
+        List<ChartSeries> seriesList = new ArrayList<>();
+        BufferedReader bufferedReader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+
+        String name = null;
+        List<String[]> rows = new ArrayList<>();
+
+        String line;
+        while (Objects.nonNull(line = bufferedReader.readLine())) {
+            String trimmed = line.trim();
+
+            if (trimmed.startsWith("//")) {
+                add(seriesList, name, rows);
+                name = trimmed.substring(2);
+                rows = new ArrayList<>();
+                continue;
+            }
+
+            String[] parts = line.split(",");
+
+            if (parts.length < 2) {
+                continue;
+            }
+
+            rows.add(parts);
+        }
+
+        add(seriesList, name, rows);
+
+        return seriesList;
+    }
+
+    private static void add(List<ChartSeries> seriesList, String name, List<String[]> rows) {
+        if (!rows.isEmpty()) {
+            seriesList.add(new ChartSeries(name, rows));
+        }
+    }
+}
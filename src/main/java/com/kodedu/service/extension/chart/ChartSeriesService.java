@@ -0,0 +1,22 @@
+package com.kodedu.service.extension.chart;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+public interface ChartSeriesService {
+
+    public final static String label = "core::service::extension::chart::ChartSeries";
+
+    public List<ChartSeries> read(String chartContent);
+
+    // Streams the file, parsed series are cached by path and modification time
+    public List<ChartSeries> readCsv(Path csvFile) throws IOException;
+
+    // Identifies the csv file version for the diagram cache without reading it
+    public String csvSource(Path csvFile) throws IOException;
+
+    // Reduces each series to the chart pixel width by the downsample and pixel-width options
+    public List<ChartSeries> downsample(List<ChartSeries> seriesList, Map<String, String> optMap);
+}
@@ -28,4 +28,9 @@ public class AreaChartBuilderServiceImpl extends XYChartBuilderServiceImpl {
         return chart;
     }
 
+    // Points on a number axis can be dropped, a category axis shows every row as its own category
+    @Override
+    public boolean isDownsampled() {
+        return true;
+    }
 }
@@ -28,5 +28,9 @@ public class BubbleChartBuilderServiceImpl extends XYChartBuilderServiceImpl {
         return chart;
     }
 
-
+    // Points on a number axis can be dropped, a category axis shows every row as its own category
+    @Override
+    public boolean isDownsampled() {
+        return true;
+    }
 }
@@ -3,13 +3,16 @@ package com.kodedu.service.extension.chart.impl;
 import com.kodedu.controller.ApplicationController;
 import com.kodedu.other.Current;
 import com.kodedu.service.ThreadService;
+import com.kodedu.service.cache.DiagramCacheService;
 import com.kodedu.service.extension.chart.ChartBuilderService;
 
 import javafx.scene.chart.*;
+import org.springframework.beans.factory.annotation.Autowired;
 
+import java.awt.image.BufferedImage;
 import java.nio.file.Path;
 import java.util.Map;
-import java.util.Objects;
+import java.util.TreeMap;
 
 /**
  * Created by usta on 01.04.2015.
@@ -21,6 +24,9 @@ public abstract class ChartBuilderServiceImpl implements ChartBuilderService {
     private final ApplicationController controller;
     protected Path currentRoot;
     protected Path imagePath;
+    protected String diagramHash;
+    @Autowired
+    private DiagramCacheService diagramCacheService;
 
     public ChartBuilderServiceImpl(ThreadService threadService, Current current, ApplicationController controller) {
         this.threadService = threadService;
@@ -30,27 +36,40 @@ public abstract class ChartBuilderServiceImpl implements ChartBuilderService {
 
     @Override
     public boolean chartBuild(String chartContent, String imagesDir, String imageTarget, Map<String, String> optMap) {
+        return prepare(chartContent, imageTarget, optMap);
+    }
+
+    // Returns true if the chart has to be drawn, false if it is unchanged or restored from the diagram cache
+    protected boolean prepare(String source, String imageTarget, Map<String, String> optMap) {
 
         if (!imageTarget.endsWith(".png")) {
             return false;
         }
 
-        Integer cacheHit = current.getCache().get(imageTarget);
-        int hashCode = (imageTarget + imagesDir + chartContent).hashCode() + optMap.hashCode();
+        String hash = diagramCacheService.hash("chart", imageTarget, getClass().getName(), source, new TreeMap<>(optMap));
 
-        if (Objects.nonNull(cacheHit))
-            if (hashCode == cacheHit) {
-                return false;
-            }
+        if (hash.equals(current.getCache().get(imageTarget))) {
+            return false;
+        }
 
-        current.getCache().put(imageTarget, hashCode);
+        current.getCache().put(imageTarget, hash);
 
         currentRoot = current.currentTab().getParentOrWorkdir();
         imagePath = currentRoot.resolve(imageTarget);
+        diagramHash = hash;
+
+        if (diagramCacheService.restore(hash, currentRoot, imageTarget)) {
+            controller.clearImageCache(imagePath);
+            return false;
+        }
 
         return true;
     }
 
+    protected void writeImage(String imageTarget, BufferedImage bufferedImage) {
+        diagramCacheService.write(diagramHash, currentRoot, imageTarget, bufferedImage);
+    }
+
     protected XYChart<String, Number> createLineChart() {
         final CategoryAxis xAxis = new CategoryAxis();
         final NumberAxis yAxis = new NumberAxis();
@@ -0,0 +1,139 @@
+package com.kodedu.service.extension.chart.impl;
+
+import com.kodedu.other.LRUMap;
+import com.kodedu.service.extension.chart.ChartDownsampler;
+import com.kodedu.service.extension.chart.ChartSeries;
+import com.kodedu.service.extension.chart.ChartSeriesReader;
+import com.kodedu.service.extension.chart.ChartSeriesService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Parses and downsamples chart series off the FX thread, so only the remaining points become chart nodes.
+ */
+@Component(ChartSeriesService.label)
+public class ChartSeriesServiceImpl implements ChartSeriesService {
+
+    private final Logger logger = LoggerFactory.getLogger(ChartSeriesService.class);
+
+    private final String downsample;
+    private final int pixelWidth;
+    private final Map<Path, CsvSeries> csvCache;
+
+    @Autowired
+    public ChartSeriesServiceImpl(@Value("${application.chart.downsample}") String downsample,
+                                  @Value("${application.chart.pixel-width}") int pixelWidth,
+                                  @Value("${application.chart.series-cache-size}") int cacheSize) {
+        this.downsample = downsample;
+        this.pixelWidth = pixelWidth;
+        this.csvCache = Collections.synchronizedMap(new LRUMap<>(cacheSize, true));
+    }
+
+    @Override
+    public List<ChartSeries> read(String chartContent) {
+        return ChartSeriesReader.read(chartContent);
+    }
+
+    @Override
+    public List<ChartSeries> readCsv(Path csvFile) throws IOException {
+        Path path = csvFile.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+
+        CsvSeries cached = csvCache.get(path);
+        if (Objects.nonNull(cached) && cached.matches(attributes)) {
+            return cached.seriesList;
+        }
+
+        List<ChartSeries> seriesList;
+        // Malformed input is replaced instead of failing the whole chart
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8))) {
+            seriesList = ChartSeriesReader.read(reader);
+        }
+
+        csvCache.put(path, new CsvSeries(attributes, seriesList));
+        logger.debug("Chart series are read from {}", path);
+
+        return seriesList;
+    }
+
+    @Override
+    public String csvSource(Path csvFile) throws IOException {
+        Path path = csvFile.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return String.join(":", path.toString(), String.valueOf(attributes.lastModifiedTime().toMillis()),
+                String.valueOf(attributes.size()));
+    }
+
+    @Override
+    public List<ChartSeries> downsample(List<ChartSeries> seriesList, Map<String, String> optMap) {
+        String method = optMap.getOrDefault("downsample", downsample);
+        int threshold = pixelWidth;
+
+        if (Objects.nonNull(optMap.get("pixel-width"))) {
+            try {
+                threshold = Integer.parseInt(optMap.get("pixel-width").trim());
+            } catch (NumberFormatException e) {
+                logger.error("Problem occured while parsing chart pixel width {}", optMap.get("pixel-width"));
+            }
+        }
+
+        List<ChartSeries> sampled = new ArrayList<>(seriesList.size());
+        for (ChartSeries series : seriesList) {
+            sampled.add(downsample(series, method, threshold));
+        }
+        return sampled;
+    }
+
+    private ChartSeries downsample(ChartSeries series, String method, int threshold) {
+        List<String[]> rows = series.getRows();
+
+        if (rows.size() <= threshold) {
+            return series;
+        }
+
+        switch (method) {
+            case "lttb":
+                return series.withRows(ChartDownsampler.lttb(rows, threshold));
+            case "min-max":
+                return series.withRows(ChartDownsampler.minMax(rows, threshold));
+            case "none":
+                return series;
+            default:
+                logger.error("Problem occured while downsampling chart, unknown method {}", method);
+                return series;
+        }
+    }
+
+    private static class CsvSeries {
+        private final FileTime modified;
+        private final long size;
+        private final List<ChartSeries> seriesList;
+
+        private CsvSeries(BasicFileAttributes attributes, List<ChartSeries> seriesList) {
+            this.modified = attributes.lastModifiedTime();
+            this.size = attributes.size();
+            this.seriesList = Collections.unmodifiableList(seriesList);
+        }
+
+        private boolean matches(BasicFileAttributes attributes) {
+            return modified.equals(attributes.lastModifiedTime()) && size == attributes.size();
+        }
+    }
+}
@@ -2,7 +2,6 @@ package com.kodedu.service.extension.chart.impl;
 
 import com.kodedu.config.ExtensionConfigBean;
 import com.kodedu.controller.ApplicationController;
-import com.kodedu.helper.IOHelper;
 import com.kodedu.other.Current;
 import com.kodedu.service.ThreadService;
 import javafx.collections.FXCollections;
@@ -128,8 +127,7 @@ public class PieChartBuilderServiceImpl extends ChartBuilderServiceImpl {
             WritableImage writableImage = pieChart.snapshot(new SnapshotParameters(), null);
             controller.getRootAnchor().getChildren().remove(pieChart);
             BufferedImage bufferedImage = SwingFXUtils.fromFXImage(writableImage, null);
-            IOHelper.createDirectories(currentRoot.resolve(imagesDir));
-            IOHelper.imageWrite(bufferedImage, "png", imagePath.toFile());
+            writeImage(imageTarget, bufferedImage);
             controller.clearImageCache(imagePath);
 
         });
@@ -2,10 +2,11 @@ package com.kodedu.service.extension.chart.impl;
 
 import com.kodedu.config.ExtensionConfigBean;
 import com.kodedu.controller.ApplicationController;
-import com.kodedu.helper.IOHelper;
 import com.kodedu.other.Current;
 import com.kodedu.service.ThreadService;
 import com.kodedu.service.extension.chart.ChartBuilderService;
+import com.kodedu.service.extension.chart.ChartSeries;
+import com.kodedu.service.extension.chart.ChartSeriesReader;
 
 import javafx.embed.swing.SwingFXUtils;
 import javafx.geometry.Side;
@@ -43,8 +44,13 @@ public abstract class XYChartBuilderServiceImpl extends ChartBuilderServiceImpl
 
     @Override
     public boolean chartBuild(String chartContent, String imagesDir, String imageTarget, Map<String, String> optMap) {
+        return chartBuild(ChartSeriesReader.read(chartContent), chartContent, imagesDir, imageTarget, optMap);
+    }
+
+    @Override
+    public boolean chartBuild(List<ChartSeries> seriesList, String source, String imagesDir, String imageTarget, Map<String, String> optMap) {
 
-        boolean chartBuild = super.chartBuild(chartContent, imagesDir, imageTarget, optMap);
+        boolean chartBuild = prepare(source, imageTarget, optMap);
 
         if (!chartBuild) {
             return chartBuild;
@@ -52,8 +58,6 @@ public abstract class XYChartBuilderServiceImpl extends ChartBuilderServiceImpl
 
         logger.debug("Chart extension is started for {}", imageTarget);
 
-        String[] split = chartContent.split("\\r?\\n");
-        List<String> lines = Arrays.asList(split);
         List colors = new ArrayList<>();
 
         XYChart xyChart = createXYChart();
@@ -63,7 +67,6 @@ public abstract class XYChartBuilderServiceImpl extends ChartBuilderServiceImpl
         xyChart.setScaleX(scale);
         xyChart.setScaleY(scale);
         xyChart.setScaleZ(scale);
-        XYChart.Series series = new XYChart.Series();
 
         Axis xAxis = xyChart.getXAxis();
         Axis yAxis = xyChart.getYAxis();
@@ -74,49 +77,49 @@ public abstract class XYChartBuilderServiceImpl extends ChartBuilderServiceImpl
         yAxis.setAnimated(false);
         yAxis.setTickLabelGap(10);
 
-        for (String line : lines) {
+        for (ChartSeries chartSeries : seriesList) {
 
-            if (line.trim().startsWith("//")) {
-                series = new XYChart.Series();
-                series.setName(line.trim().substring(2));
+            XYChart.Series series = new XYChart.Series();
+            if (Objects.nonNull(chartSeries.getName())) {
+                series.setName(chartSeries.getName());
             }
 
-            String[] parts = line.split(",");
+            // Points are collected first, so the chart lays out each series once
+            List<XYChart.Data> data = new ArrayList<>(chartSeries.getRows().size());
 
-            if (parts.length < 2)
-                continue;
+            for (String[] parts : chartSeries.getRows()) {
 
-            Object name = null; // try first double
-            Object value = null; // try first double
-            Object color = null; // try first double
+                Object name = null; // try first double
+                Object value = null; // try first double
+                Object color = null; // try first double
 
-            if (parts.length == 3) {
-                color = parts[2];
-                colors.add(color);
-                xyChart.setStyle("-fx-bar-fill: " + color + ";");
-            }
+                if (parts.length == 3) {
+                    color = parts[2];
+                    colors.add(color);
+                    xyChart.setStyle("-fx-bar-fill: " + color + ";");
+                }
 
-            if (xAxis instanceof NumberAxis) {
-                name = Double.valueOf(parts[0]);
-            }
+                if (xAxis instanceof NumberAxis) {
+                    name = Double.valueOf(parts[0]);
+                }
 
-            if (yAxis instanceof NumberAxis) {
-                value = Double.valueOf(parts[1]);
-            }
+                if (yAxis instanceof NumberAxis) {
+                    value = Double.valueOf(parts[1]);
+                }
 
-            if (xAxis instanceof CategoryAxis) {
-                name = String.valueOf(parts[0]);
-            }
+                if (xAxis instanceof CategoryAxis) {
+                    name = String.valueOf(parts[0]);
+                }
 
-            if (yAxis instanceof CategoryAxis) {
-                value = String.valueOf(parts[1]);
-            }
+                if (yAxis instanceof CategoryAxis) {
+                    value = String.valueOf(parts[1]);
+                }
 
-            series.getData().add(new XYChart.Data(name, value));
-
-            if (!xyChart.getData().contains(series))
-                xyChart.getData().add(series);
+                data.add(new XYChart.Data(name, value));
+            }
 
+            series.getData().setAll(data);
+            xyChart.getData().add(series);
         }
 
         for (int i = 0; i < colors.size(); i++) {
@@ -213,8 +216,7 @@ public abstract class XYChartBuilderServiceImpl extends ChartBuilderServiceImpl
         WritableImage writableImage = xyChart.snapshot(new SnapshotParameters(), null);
         controller.getRootAnchor().getChildren().remove(xyChart);
         BufferedImage bufferedImage = SwingFXUtils.fromFXImage(writableImage, null);
-        IOHelper.createDirectories(currentRoot.resolve(imagesDir));
-        IOHelper.imageWrite(bufferedImage, "png", imagePath.toFile());
+        writeImage(imageTarget, bufferedImage);
         logger.debug("Chart extension is ended for {}", imageTarget);
         controller.clearImageCache(imagePath);
 
@@ -0,0 +1,190 @@
+package com.kodedu.service.extension.impl;
+
+import com.kodedu.service.ThreadService;
+import com.kodedu.service.extension.DiagramSchedulerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Orders diagram renders by their distance to the editor viewport and cursor. Diagrams in view come first,
+ * closest to the cursor, then the others by their distance to the view. Each diagram type has its own
+ * concurrency limit, and a slot is held until the render reports completion. A request for an image target
+ * which is being rendered stays queued until that render finishes, so an older render can't land last.
+ */
+@Component(DiagramSchedulerService.label)
+public class DiagramSchedulerServiceImpl implements DiagramSchedulerService {
+
+    private final Logger logger = LoggerFactory.getLogger(DiagramSchedulerService.class);
+
+    private static final int OUT_OF_VIEW = 1_000_000;
+
+    private final ThreadService threadService;
+    private final Map<String, Integer> limits;
+    private final int timeout;
+
+    // Guarded by this
+    private final Map<String, Request> pending = new HashMap<>();
+    private final Map<String, TreeSet<Request>> queues = new HashMap<>();
+    private final Map<String, Integer> running = new HashMap<>();
+    private final Map<String, String> inFlight = new HashMap<>();
+    private int firstLine;
+    private int lastLine;
+    private int cursorLine;
+    private long sequence;
+
+    @Autowired
+    public DiagramSchedulerServiceImpl(ThreadService threadService,
+                                       @Value("#{${application.diagram.concurrency}}") Map<String, Integer> limits,
+                                       @Value("${application.diagram.render-timeout}") int timeout) {
+        this.threadService = threadService;
+        this.limits = limits;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public synchronized void schedule(String type, String imageTarget, String hash, int line, Supplier<CompletionStage<?>> render) {
+        Request previous = pending.remove(imageTarget);
+        if (Objects.nonNull(previous)) {
+            queue(previous.type).remove(previous);
+        }
+
+        if (hash.equals(inFlight.get(imageTarget))) {
+            return;
+        }
+
+        Request request = new Request(type, imageTarget, hash, line, render, sequence++);
+        request.priority = priority(line);
+        pending.put(imageTarget, request);
+        queue(type).add(request);
+
+        dispatch();
+    }
+
+    @Override
+    public synchronized void updateViewport(int firstLine, int lastLine, int cursorLine) {
+        if (this.firstLine == firstLine && this.lastLine == lastLine && this.cursorLine == cursorLine) {
+            return;
+        }
+
+        this.firstLine = firstLine;
+        this.lastLine = lastLine;
+        this.cursorLine = cursorLine;
+
+        for (TreeSet<Request> queue : queues.values()) {
+            List<Request> requests = new ArrayList<>(queue);
+            queue.clear();
+            for (Request request : requests) {
+                request.priority = priority(request.line);
+            }
+            queue.addAll(requests);
+        }
+    }
+
+    private int priority(int line) {
+        if (line < 0) {
+            return OUT_OF_VIEW;
+        }
+        if (line >= firstLine && line <= lastLine) {
+            return Math.abs(line - cursorLine);
+        }
+        return OUT_OF_VIEW + (line < firstLine ? firstLine - line : line - lastLine);
+    }
+
+    private TreeSet<Request> queue(String type) {
+        return queues.computeIfAbsent(type, t -> new TreeSet<>(Comparator.<Request>comparingInt(r -> r.priority)
+                .thenComparingLong(r -> r.sequence)));
+    }
+
+    private void dispatch() {
+        while (true) {
+            Request next = null;
+            for (Map.Entry<String, TreeSet<Request>> entry : queues.entrySet()) {
+                TreeSet<Request> queue = entry.getValue();
+                if (queue.isEmpty() || running.getOrDefault(entry.getKey(), 0) >= limits.getOrDefault(entry.getKey(), 1)) {
+                    continue;
+                }
+                Request first = queue.stream()
+                        .filter(r -> !inFlight.containsKey(r.imageTarget))
+                        .findFirst()
+                        .orElse(null);
+                if (Objects.isNull(first)) {
+                    continue;
+                }
+                if (Objects.isNull(next) || first.priority < next.priority
+                        || (first.priority == next.priority && first.sequence < next.sequence)) {
+                    next = first;
+                }
+            }
+
+            if (Objects.isNull(next)) {
+                return;
+            }
+
+            Request request = next;
+            queue(request.type).remove(request);
+            pending.remove(request.imageTarget);
+            running.merge(request.type, 1, Integer::sum);
+            inFlight.put(request.imageTarget, request.hash);
+
+            threadService.runTaskLater(() -> start(request));
+        }
+    }
+
+    private void start(Request request) {
+        CompletionStage<?> stage = null;
+        try {
+            stage = request.render.get();
+        } catch (Exception e) {
+            logger.error("Problem occured while rendering {} diagram", request.type, e);
+        }
+
+        if (Objects.isNull(stage)) {
+            finish(request);
+            return;
+        }
+
+        // A render which never completes can't hold its slot forever
+        stage.toCompletableFuture()
+                .orTimeout(timeout, TimeUnit.SECONDS)
+                .whenComplete((result, error) -> finish(request));
+    }
+
+    private synchronized void finish(Request request) {
+        running.merge(request.type, -1, Integer::sum);
+        inFlight.remove(request.imageTarget);
+        dispatch();
+    }
+
+    private static class Request {
+        private final String type;
+        private final String imageTarget;
+        private final String hash;
+        private final int line;
+        private final Supplier<CompletionStage<?>> render;
+        private final long sequence;
+        private int priority;
+
+        private Request(String type, String imageTarget, String hash, int line, Supplier<CompletionStage<?>> render, long sequence) {
+            this.type = type;
+            this.imageTarget = imageTarget;
+            this.hash = hash;
+            this.line = line;
+            this.render = render;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -2,19 +2,20 @@ package com.kodedu.service.extension.impl;
 
 import com.kodedu.config.ExtensionConfigBean;
 import com.kodedu.controller.ApplicationController;
-import com.kodedu.helper.IOHelper;
 import com.kodedu.other.Current;
 import com.kodedu.other.TrimWhite;
 import com.kodedu.service.ThreadService;
-import com.kodedu.service.cache.BinaryCacheService;
+import com.kodedu.service.cache.DiagramCacheService;
 import com.kodedu.service.extension.MathJaxService;
 
+import javafx.animation.PauseTransition;
 import javafx.concurrent.Worker;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.SnapshotParameters;
 import javafx.scene.image.WritableImage;
 import javafx.scene.web.WebEngine;
 import javafx.scene.web.WebView;
+import javafx.util.Duration;
 import netscape.javascript.JSObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,9 +23,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
 import java.awt.image.BufferedImage;
+import java.io.StringReader;
 import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by usta on 25.12.2014.
@@ -40,14 +51,30 @@ public class MathJaxServiceImpl implements MathJaxService {
     @Autowired
     private ThreadService threadService;
     @Autowired
-    private BinaryCacheService binaryCacheService;
+    private DiagramCacheService diagramCacheService;
+
+    private static final int MAX_BATCH_SIZE = 64;
 
     private WebView webView;
     private boolean initialized;
+    private boolean listening;
+
+    // Accessed only on the FX thread
+    private final Map<String, Formula> pendingFormulas = new LinkedHashMap<>();
+    private final Map<String, Formula> batchFormulas = new LinkedHashMap<>();
+    private boolean batchScheduled;
+    private String batchJson;
+    private int batchId;
+    // Follows how many formulas the view holds, formulas which don't fit are typeset again with the next batch
+    private int batchSize = 16;
+    private PauseTransition watchdog;
 
     @Value("${application.mathjax.url}")
     private String mathjaxUrl;
 
+    @Value("${application.mathjax.timeout}")
+    private long timeout;
+
     @Autowired
     public MathJaxServiceImpl(final ApplicationController controller, final Current current, ExtensionConfigBean extensionConfigBean) {
         this.controller = controller;
@@ -55,23 +82,29 @@ public class MathJaxServiceImpl implements MathJaxService {
         this.extensionConfigBean = extensionConfigBean;
     }
 
-    private void initialize(Runnable... runnable) {
+    private void initialize() {
 
-        webEngine().getLoadWorker().stateProperty().addListener((observableValue1, state, state2) -> {
-            if (state2 == Worker.State.SUCCEEDED) {
-                JSObject window = getWindow();
-                if (window.getMember("afx").equals("undefined"))
-                    window.setMember("afx", controller);
+        if (!listening) {
+            listening = true;
+            webEngine().getLoadWorker().stateProperty().addListener((observableValue1, state, state2) -> {
+                if (state2 == Worker.State.SUCCEEDED) {
+                    JSObject window = getWindow();
+                    if (window.getMember("afx").equals("undefined"))
+                        window.setMember("afx", controller);
 
-                if (!initialized) {
-                    for (Runnable run : runnable) {
-                        run.run();
+                    initialized = true;
+
+                    // Sends the batch waiting for the page, or the formulas requeued by a reload
+                    if (batchFormulas.isEmpty()) {
+                        processBatch();
+                    } else {
+                        sendBatch();
                     }
+                } else if (state2 == Worker.State.FAILED) {
+                    failBatch("MathJax page is not loaded");
                 }
-
-                initialized = true;
-            }
-        });
+            });
+        }
 
         this.load();
     }
@@ -84,6 +117,10 @@ public class MathJaxServiceImpl implements MathJaxService {
 
     @Override
     public void reload() {
+        threadService.runActionLater(() -> {
+            // A batch in typesetting is lost with the page
+            requeueBatch();
+        });
         this.load();
     }
 
@@ -92,18 +129,105 @@ public class MathJaxServiceImpl implements MathJaxService {
     }
 
     @Override
-    public void processFormula(String formula, String imagesDir, String imageTarget) {
+    public CompletableFuture<?> processFormula(String formula, String imagesDir, String imageTarget) {
+
+        if (Objects.isNull(imageTarget)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        if (!imageTarget.endsWith(".png") && !imageTarget.endsWith(".svg") && !imageTarget.contains("/afx/cache")) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        String hash = diagramCacheService.hash("mathjax", imageTarget, formula);
+        if (hash.equals(current.getCache().get(imageTarget))) {
+            return CompletableFuture.completedFuture(null);
+        }
 
+        Path path = current.currentTab().getParentOrWorkdir();
+        if (diagramCacheService.restore(hash, path, imageTarget)) {
+            // Skips typesetting when the formula is stored in the diagram cache
+            current.getCache().put(imageTarget, hash);
+            clearImageCache(path, imageTarget);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Formula pending = new Formula(formula, imageTarget, hash, path);
         threadService.runActionLater(() -> {
+            Formula replaced = pendingFormulas.put(imageTarget, pending);
+            if (Objects.nonNull(replaced)) {
+                replaced.done.complete(null);
+            }
+            if (!batchScheduled) {
+                // Formulas reported in the same conversion are typeset in one batch
+                batchScheduled = true;
+                threadService.runActionLater(this::processBatch);
+            }
+        });
+        return pending.done;
+    }
+
+    private void processBatch() {
+        batchScheduled = false;
+        if (pendingFormulas.isEmpty() || !batchFormulas.isEmpty()) {
+            return;
+        }
 
-            if (initialized) {
-                getWindow().call("processFormula", formula, imagesDir, imageTarget);
+        JsonArrayBuilder batch = Json.createArrayBuilder();
+        Iterator<Formula> iterator = pendingFormulas.values().iterator();
+        while (iterator.hasNext() && batchFormulas.size() < batchSize) {
+            Formula formula = iterator.next();
+            iterator.remove();
+            batchFormulas.put(formula.imageTarget, formula);
+            batch.add(Json.createObjectBuilder()
+                    .add("formula", formula.formula)
+                    .add("imageTarget", formula.imageTarget));
+        }
+
+        batchJson = batch.build().toString();
+        batchId++;
+
+        // A batch which never reports back would block every later batch
+        if (Objects.isNull(watchdog)) {
+            watchdog = new PauseTransition();
+            watchdog.setOnFinished(event -> failBatch(String.format("MathJax formulas are not typeset in %d seconds", timeout)));
+        }
+        watchdog.setDuration(Duration.seconds(timeout));
+        watchdog.playFromStart();
+
+        sendBatch();
+    }
+
+    private void sendBatch() {
+        if (initialized) {
+            getWindow().call("processFormulas", batchJson, batchId);
+        } else {
+            initialize();
+        }
+    }
+
+    private void failBatch(String reason) {
+        if (Objects.nonNull(watchdog)) {
+            watchdog.stop();
+        }
+        if (batchFormulas.isEmpty()) {
+            return;
+        }
+
+        logger.error("Problem occured while typesetting MathJax formulas {}: {}", batchFormulas.keySet(), reason);
+        // Failed formulas aren't put into the cache, they are typeset again with the next render
+        batchFormulas.values().forEach(formula -> formula.done.complete(null));
+        batchFormulas.clear();
+        processBatch();
+    }
+
+    private void clearImageCache(Path path, String imageTarget) {
+        threadService.runActionLater(() -> {
+            if (imageTarget.contains("/afx/cache")) {
+                controller.clearImageCache(imageTarget);
             } else {
-                initialize(() -> {
-                    getWindow().call("processFormula", formula, imagesDir, imageTarget);
-                });
+                controller.clearImageCache(path.resolve(imageTarget));
             }
-
         });
     }
 
@@ -129,59 +253,110 @@ public class MathJaxServiceImpl implements MathJaxService {
     }
 
     @Override
-    public void snapshotFormula(String formula, String imagesDir, String imageTarget) {
+    public void snapshotFormulas(String json) {
+        JsonObject report;
+        try (JsonReader reader = Json.createReader(new StringReader(json))) {
+            report = reader.readObject();
+        }
 
-        try {
-            Objects.requireNonNull(imageTarget);
+        if (report.getInt("batch") != batchId) {
+            // Reported after the watchdog failed its batch
+            return;
+        }
 
-            boolean cachedResource = imageTarget.contains("/afx/cache");
+        JsonArray results = report.getJsonArray("results");
 
-            if (!imageTarget.endsWith(".png") && !cachedResource)
-                return;
+        if (results.isEmpty()) {
+            failBatch("MathJax reported no formulas");
+            return;
+        }
 
-            Integer cacheHit = current.getCache().get(imageTarget);
+        watchdog.stop();
 
-            int hashCode = (imageTarget + imagesDir + formula).hashCode();
+        BufferedImage snapshot = null;
+        double zoom = getWebView().getZoom();
+        int sent = batchFormulas.size();
 
-            if (Objects.isNull(cacheHit) || hashCode != cacheHit) {
+        for (JsonObject result : results.getValuesAs(JsonObject.class)) {
+            Formula formula = batchFormulas.remove(result.getString("imageTarget"));
+            if (Objects.isNull(formula)) {
+                continue;
+            }
 
+            if (Objects.isNull(snapshot)) {
                 WritableImage writableImage = getWebView().snapshot(new SnapshotParameters(), null);
-                BufferedImage bufferedImage = SwingFXUtils.fromFXImage(writableImage, null);
-
-                Path path = current.currentTab().getParentOrWorkdir();
-
-                threadService.runTaskLater(() -> {
-                    try {
-                        TrimWhite trimWhite = new TrimWhite();
-                        BufferedImage trimmed = trimWhite.trim(bufferedImage);
-                        if (!cachedResource) {
-                            Path imagePath = path.resolve(imageTarget);
-                            IOHelper.createDirectories(imagePath.getParent());
-                            IOHelper.imageWrite(trimmed, "png", imagePath.toFile());
-                            threadService.runActionLater(() -> {
-                                controller.clearImageCache(imagePath);
-                            });
-                        } else {
-                            binaryCacheService.putBinary(imageTarget, trimmed);
-                            threadService.runActionLater(() -> {
-                                controller.clearImageCache(imageTarget);
-                            });
-                        }
-
-                        current.getCache().put(imageTarget, hashCode);
-                        logger.debug("MathJax extension is ended for {}", imageTarget);
-
-                    } catch (Exception e) {
-                        logger.error("Problem occured while generating MathJax png", e);
-                        throw new RuntimeException(e);
-                    }
-                });
+                snapshot = SwingFXUtils.fromFXImage(writableImage, null);
+            }
+
+            int x = (int) Math.max(0, Math.floor(result.getJsonNumber("x").doubleValue() * zoom));
+            int y = (int) Math.max(0, Math.floor(result.getJsonNumber("y").doubleValue() * zoom));
+            int width = (int) Math.min(snapshot.getWidth() - x, Math.ceil(result.getJsonNumber("width").doubleValue() * zoom));
+            int height = (int) Math.min(snapshot.getHeight() - y, Math.ceil(result.getJsonNumber("height").doubleValue() * zoom));
+            if (width <= 0 || height <= 0) {
+                logger.error("MathJax formula for {} is out of view", formula.imageTarget);
+                formula.done.complete(null);
+                continue;
             }
-        } catch (Exception e) {
-            logger.error("Problem occured while generating MathJax png", e);
-            throw e;
+
+            writeRaster(formula, snapshot.getSubimage(x, y, width, height));
+        }
+
+        if (!batchFormulas.isEmpty()) {
+            batchSize = Math.max(1, sent - batchFormulas.size());
+        } else if (sent == batchSize) {
+            // Grows slowly, so a batch over the view limit wastes only a few formulas
+            batchSize = Math.min(MAX_BATCH_SIZE, batchSize + Math.max(1, batchSize / 4));
         }
 
+        // Formulas which did not fit into the view go with the next batch
+        requeueBatch();
+        processBatch();
+    }
 
+    private void requeueBatch() {
+        if (Objects.nonNull(watchdog)) {
+            watchdog.stop();
+        }
+        batchFormulas.forEach((imageTarget, formula) -> {
+            if (Objects.nonNull(pendingFormulas.putIfAbsent(imageTarget, formula))) {
+                // Already replaced by a newer formula
+                formula.done.complete(null);
+            }
+        });
+        batchFormulas.clear();
+    }
+
+    private void writeRaster(Formula formula, BufferedImage bufferedImage) {
+        threadService.runTaskLater(() -> {
+            try {
+                TrimWhite trimWhite = new TrimWhite();
+                BufferedImage trimmed = trimWhite.trim(bufferedImage);
+                diagramCacheService.write(formula.hash, formula.path, formula.imageTarget, trimmed);
+                clearImageCache(formula.path, formula.imageTarget);
+
+                current.getCache().put(formula.imageTarget, formula.hash);
+                logger.debug("MathJax extension is ended for {}", formula.imageTarget);
+
+            } catch (Exception e) {
+                logger.error("Problem occured while generating MathJax png", e);
+            } finally {
+                formula.done.complete(null);
+            }
+        });
+    }
+
+    private static class Formula {
+        private final String formula;
+        private final String imageTarget;
+        private final String hash;
+        private final Path path;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Formula(String formula, String imageTarget, String hash, Path path) {
+            this.formula = formula;
+            this.imageTarget = imageTarget;
+            this.hash = hash;
+            this.path = path;
+        }
     }
 }
@@ -2,49 +2,73 @@ package com.kodedu.service.extension.impl;
 
 import com.kodedu.config.ExtensionConfigBean;
 import com.kodedu.controller.ApplicationController;
-import com.kodedu.helper.IOHelper;
 import com.kodedu.other.Current;
 import com.kodedu.other.TrimWhite;
 import com.kodedu.service.ThreadService;
-import com.kodedu.service.cache.BinaryCacheService;
+import com.kodedu.service.cache.DiagramCacheService;
 import com.kodedu.service.extension.MermaidService;
 
+import javafx.animation.PauseTransition;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.SnapshotParameters;
 import javafx.scene.image.WritableImage;
 import javafx.scene.web.WebView;
+import javafx.util.Duration;
 import netscape.javascript.JSObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.util.DigestUtils;
 
-import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Renders Mermaid diagrams on a small pool of offscreen WebViews which keep mermaid.html loaded.
+ * Queued diagrams are rendered one after another by the first idle WebView. A WebView is recycled
+ * after a number of renders, or when a render does not finish in time. After a few consecutive
+ * page load failures the pool is not reloaded anymore, until a new diagram is queued.
+ */
 @Component(MermaidService.label)
 public class MermaidServiceImpl implements MermaidService {
 
     private final Logger logger = LoggerFactory.getLogger(MermaidService.class);
 
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int MAX_LOAD_FAILURES = 3;
+
     private Current current;
     private ApplicationController controller;
     private final ExtensionConfigBean extensionConfigBean;
     @Autowired
     private ThreadService threadService;
     @Autowired
-    private BinaryCacheService binaryCacheService;
+    private DiagramCacheService diagramCacheService;
 
     @Value("${application.mermaid.url}")
     private String mermaidUrl;
 
-    private Map<String, Integer> rerenderMap = new ConcurrentHashMap<>();
+    @Value("${application.mermaid.pool-size}")
+    private int poolSize;
+
+    @Value("${application.mermaid.recycle-after}")
+    private int recycleAfter;
+
+    @Value("${application.mermaid.timeout}")
+    private int timeout;
+
+    // Pending diagrams by image target, accessed only on the FX thread
+    private final Map<String, MermaidJob> queue = new LinkedHashMap<>();
+    private final List<PooledWebView> pool = new ArrayList<>();
+    private int loadFailures;
 
     @Autowired
     public MermaidServiceImpl(final Current current, final ApplicationController controller, ExtensionConfigBean extensionConfigBean) {
@@ -54,103 +78,277 @@ public class MermaidServiceImpl implements MermaidService {
     }
 
     @Override
-    public void createMermaidDiagram(String mermaidContent, String type, String imagesDir, String imageTarget, String nodename, boolean rerender) {
+    public CompletableFuture<?> createMermaidDiagram(String mermaidContent, String type, String imagesDir, String imageTarget, String nodename, boolean rerender) {
         Objects.requireNonNull(imageTarget);
 
         boolean cachedResource = imageTarget.contains("/afx/cache");
 
-        if (rerender) {
-            String md5 = cachedResource ? imageTarget : DigestUtils.md5DigestAsHex(mermaidContent.getBytes());
-            Integer renderCount = rerenderMap.compute(md5, (s, n) -> n == null ? 1 : (++n));
-            if (renderCount > 3) {
-                logger.error("Can't render image in more than 3 attempts.");
+        if (!imageTarget.endsWith(".png") && !imageTarget.endsWith(".svg") && !cachedResource) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        String hash = diagramCacheService.hash("mermaid", imageTarget, type, mermaidContent);
+        if (rerender || !hash.equals(current.getCache().get(imageTarget))) {
+
+            Path path = current.currentTab().getParentOrWorkdir();
+
+            if (diagramCacheService.restore(hash, path, imageTarget)) {
+                current.getCache().put(imageTarget, hash);
+                clearImageCache(path, imageTarget);
+                return CompletableFuture.completedFuture(null);
+            }
+
+            MermaidJob job = new MermaidJob(mermaidContent, hash, path, imageTarget);
+            threadService.runActionLater(() -> {
+                // A newer content for the same target replaces the queued one
+                MermaidJob replaced = queue.remove(imageTarget);
+                if (Objects.nonNull(replaced)) {
+                    replaced.done.complete(null);
+                }
+                queue.put(imageTarget, job);
+                dispatch();
+            });
+            return job.done;
+        }
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private void dispatch() {
+        // After repeated load failures a single WebView is tried, only when there is work for it
+        int size = loadFailures < MAX_LOAD_FAILURES ? Math.max(1, poolSize) : queue.isEmpty() ? 0 : 1;
+        while (pool.size() < size) {
+            pool.add(new PooledWebView());
+        }
+
+        for (PooledWebView pooled : pool) {
+            if (queue.isEmpty()) {
+                return;
+            }
+            if (pooled.isIdle()) {
+                MermaidJob job = queue.values().iterator().next();
+                queue.remove(job.imageTarget);
+                pooled.render(job);
+            }
+        }
+    }
+
+    private void failQueue() {
+        queue.values().forEach(job -> job.done.complete(null));
+        queue.clear();
+    }
+
+    private void finish(MermaidJob job, BufferedImage bufferedImage) {
+        threadService.runTaskLater(() -> {
+            TrimWhite trimWhite = new TrimWhite();
+            BufferedImage trimmed = trimWhite.trim(bufferedImage);
+            if (trimWhite.isBlank(trimmed)) {
+                retry(job, "Mermaid diagram is rendered empty");
+                return;
+            }
+
+            diagramCacheService.write(job.hash, job.path, job.imageTarget, trimmed);
+            clearImageCache(job.path, job.imageTarget);
+
+            current.getCache().put(job.imageTarget, job.hash);
+            job.done.complete(null);
+        });
+    }
+
+    // Svg targets take the markup of the page, without snapshot, trim and png encoding
+    private void finish(MermaidJob job, String svg) {
+        threadService.runTaskLater(() -> {
+            if (Objects.isNull(svg) || svg.isEmpty()) {
+                retry(job, "Mermaid diagram is rendered empty");
+                return;
+            }
+
+            byte[] bytes = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + svg).getBytes(StandardCharsets.UTF_8);
+            diagramCacheService.write(job.hash, job.path, job.imageTarget, bytes);
+            clearImageCache(job.path, job.imageTarget);
+
+            current.getCache().put(job.imageTarget, job.hash);
+            job.done.complete(null);
+        });
+    }
+
+    private void retry(MermaidJob job, String reason) {
+        threadService.runActionLater(() -> {
+            if (++job.attempts >= MAX_ATTEMPTS) {
+                logger.error("Can't render image in more than {} attempts. {}", MAX_ATTEMPTS, reason);
+                job.done.complete(null);
                 return;
             }
+            if (Objects.nonNull(queue.putIfAbsent(job.imageTarget, job))) {
+                // Already replaced by a newer content
+                job.done.complete(null);
+            }
+            dispatch();
+        });
+    }
+
+    private void clearImageCache(Path path, String imageTarget) {
+        if (imageTarget.contains("/afx/cache")) {
+            controller.clearImageCache(imageTarget);
+        } else {
+            controller.clearImageCache(path.resolve(imageTarget));
         }
+    }
+
+    private static class MermaidJob {
+        private final String content;
+        private final String hash;
+        private final Path path;
+        private final String imageTarget;
+        private final boolean svg;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private int attempts;
 
-        if (!imageTarget.endsWith(".png") && !cachedResource) {
-            return;
+        private MermaidJob(String content, String hash, Path path, String imageTarget) {
+            this.content = content;
+            this.hash = hash;
+            this.path = path;
+            this.imageTarget = imageTarget;
+            this.svg = imageTarget.endsWith(".svg");
         }
+    }
 
-        Integer cacheHit = current.getCache().get(imageTarget);
+    private class PooledWebView {
+        private WebView webView;
+        private boolean ready;
+        private MermaidJob job;
+        private int renderCount;
+        private final PauseTransition watchdog = new PauseTransition();
 
-        int hashCode = Objects.hash(imageTarget, imagesDir, type, mermaidContent);
-        if (Objects.isNull(cacheHit) || hashCode != cacheHit) {
+        private PooledWebView() {
+            watchdog.setOnFinished(event -> {
+                if (!ready) {
+                    loadFailed();
+                    return;
+                }
+                logger.error("Mermaid WebView is not responding, it will be recycled");
+                MermaidJob stuck = job;
+                recycle();
+                if (Objects.nonNull(stuck)) {
+                    retry(stuck, "Mermaid rendering timed out");
+                }
+            });
+            load();
+        }
 
-            Path path = current.currentTab().getParentOrWorkdir();
+        private boolean isIdle() {
+            return ready && Objects.isNull(job);
+        }
 
-            threadService.runActionLater(() -> {
-                WebView webView = new WebView();
-                webView.setLayoutX(-42000);
-                webView.setLayoutY(-42000);
-                webView.setMinSize(0, 0);
+        private void load() {
+            ready = false;
+            job = null;
+            renderCount = 0;
 
-                int zoom = extensionConfigBean.getDefaultImageZoom();
+            webView = new WebView();
+            webView.setLayoutX(-42000);
+            webView.setLayoutY(-42000);
+            webView.setMinSize(0, 0);
+            webView.setPrefSize(3000, 3000);
 
-                webView.setPrefSize(3000, 3000);
-//                webView.setZoom(zoom);
-
-                controller.getRootAnchor().getChildren().add(webView);
-
-                threadService.runActionLater(() -> {
-                    webView.getEngine().load(String.format(mermaidUrl, controller.getPort()));
-                });
-
-                webView.getEngine().setOnAlert(event -> {
-                    String data = event.getData();
-                    if ("READY".equals(data)) {
-                        final JSObject window = (JSObject) webView.getEngine().executeScript("window");
-                        window.setMember("webview", webView);
-                        window.call("renderMermaid", mermaidContent);
-                    } else if ("RENDERED".equals(data)) {
-                        WritableImage writableImage = webView.snapshot(new SnapshotParameters(), null);
-                        BufferedImage bufferedImage = SwingFXUtils.fromFXImage(writableImage, null);
-                        threadService.runActionLater(() -> {
-                            controller.getRootAnchor().getChildren().remove(webView);
-                        });
-
-                        threadService.runTaskLater(() -> {
-                            TrimWhite trimWhite = new TrimWhite();
-                            BufferedImage trimmed = trimWhite.trim(bufferedImage);
-                            if (isImageEmpty(trimmed)) {
-                                createMermaidDiagram(mermaidContent, type, imagesDir, imageTarget, nodename, true);
-                                return;
-                            }
-
-                            if (!cachedResource) {
-                                Path treePath = path.resolve(imageTarget);
-                                IOHelper.createDirectories(path.resolve(imagesDir));
-                                IOHelper.imageWrite(trimmed, "png", treePath.toFile());
-                                controller.clearImageCache(treePath);
-                            } else {
-                                binaryCacheService.putBinary(imageTarget, trimmed);
-                                controller.clearImageCache(imageTarget);
-                            }
-
-                            current.getCache().put(imageTarget, hashCode);
-                        });
-
-                    } else {
-                        logger.error(data);
+            controller.getRootAnchor().getChildren().add(webView);
+
+            WebView view = webView;
+            view.getEngine().setOnAlert(event -> {
+                if (view != webView) {
+                    return;
+                }
+                String data = event.getData();
+                if ("READY".equals(data)) {
+                    ((JSObject) view.getEngine().executeScript("window")).setMember("webview", view);
+                    ready = true;
+                    loadFailures = 0;
+                    watchdog.stop();
+                    dispatch();
+                } else if ("RENDERED".equals(data)) {
+                    rendered();
+                } else if (data.startsWith("ERROR")) {
+                    logger.error("Problem occured while rendering Mermaid diagram {}", data);
+                    watchdog.stop();
+                    if (Objects.nonNull(job)) {
+                        job.done.complete(null);
                     }
-                });
+                    job = null;
+                    dispatch();
+                } else {
+                    logger.error(data);
+                }
             });
 
+            // Loading the page is watched as well
+            watchdog.setDuration(Duration.seconds(timeout));
+            watchdog.playFromStart();
+            view.getEngine().load(String.format(mermaidUrl, controller.getPort()));
         }
 
+        private void render(MermaidJob job) {
+            this.job = job;
+            watchdog.setDuration(Duration.seconds(timeout));
+            watchdog.playFromStart();
+            try {
+                webView.setPrefSize(3000, 3000);
+                ((JSObject) webView.getEngine().executeScript("window")).call("renderMermaid", job.content);
+            } catch (Exception e) {
+                logger.error("Problem occured while rendering Mermaid diagram", e);
+                this.job = null;
+                watchdog.stop();
+                retry(job, e.getMessage());
+            }
+        }
 
-    }
+        private void rendered() {
+            watchdog.stop();
+            MermaidJob finished = job;
+            job = null;
+            if (Objects.isNull(finished)) {
+                return;
+            }
 
-    private boolean isImageEmpty(BufferedImage bufferedImage) {
-        int width = bufferedImage.getWidth();
-        int height = bufferedImage.getHeight();
-        for (int i = 0; i < height; i++) {
-            for (int j = width - 1; j >= 0; j--) {
-                if (bufferedImage.getRGB(j, i) != Color.WHITE.getRGB()) {
-                    return false;
-                }
+            if (finished.svg) {
+                Object svg = ((JSObject) webView.getEngine().executeScript("window")).call("mermaidSvg");
+                finish(finished, svg instanceof String ? (String) svg : null);
+            } else {
+                WritableImage writableImage = webView.snapshot(new SnapshotParameters(), null);
+                BufferedImage bufferedImage = SwingFXUtils.fromFXImage(writableImage, null);
+                finish(finished, bufferedImage);
             }
+
+            if (++renderCount >= recycleAfter) {
+                recycle();
+            } else {
+                dispatch();
+            }
+        }
+
+        private void loadFailed() {
+            if (++loadFailures < MAX_LOAD_FAILURES) {
+                logger.error("Mermaid page is not loaded in time, it will be reloaded");
+                recycle();
+                return;
+            }
+
+            logger.error("Mermaid page is not loaded in {} attempts", loadFailures);
+            dispose();
+            pool.remove(this);
+            if (pool.isEmpty()) {
+                failQueue();
+            }
+        }
+
+        private void recycle() {
+            dispose();
+            load();
+        }
+
+        private void dispose() {
+            watchdog.stop();
+            controller.getRootAnchor().getChildren().remove(webView);
+            webView.getEngine().load(null);
         }
-        return true;
     }
 }
@@ -2,10 +2,9 @@ package com.kodedu.service.extension.impl;
 
 import com.kodedu.config.ExtensionConfigBean;
 import com.kodedu.controller.ApplicationController;
-import com.kodedu.helper.IOHelper;
 import com.kodedu.other.Current;
 import com.kodedu.service.ThreadService;
-import com.kodedu.service.cache.BinaryCacheService;
+import com.kodedu.service.cache.DiagramCacheService;
 import com.kodedu.service.extension.PlantUmlService;
 
 import net.sourceforge.plantuml.FileFormat;
@@ -15,14 +14,25 @@ import net.sourceforge.plantuml.security.SFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import java.io.ByteArrayOutputStream;
 import java.nio.file.Path;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 import static java.lang.String.format;
-import static java.nio.file.StandardOpenOption.*;
 import static java.util.Objects.nonNull;
 
 /**
@@ -33,29 +43,45 @@ public class PlantUmlServiceImpl implements PlantUmlService {
 
     private final Logger logger = LoggerFactory.getLogger(PlantUmlService.class);
 
+    private static final Pattern INCLUDE = Pattern.compile("^\\s*!(include|import)", Pattern.MULTILINE);
+
     private final Current current;
     private final ApplicationController controller;
     private final ExtensionConfigBean extensionConfigBean;
     @Autowired
     private ThreadService threadService;
     @Autowired
-    private BinaryCacheService binaryCacheService;
+    private DiagramCacheService diagramCacheService;
+
+    @Value("${application.plantuml.timeout}")
+    private long timeout;
+
+    private final ExecutorService renderPool;
+    private final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
 
     @Autowired
-    public PlantUmlServiceImpl(final Current current, final ApplicationController controller, ExtensionConfigBean extensionConfigBean) {
+    public PlantUmlServiceImpl(final Current current, final ApplicationController controller, ExtensionConfigBean extensionConfigBean,
+                               @Value("${application.plantuml.pool-size}") int poolSize) {
         this.current = current;
         this.controller = controller;
         this.extensionConfigBean = extensionConfigBean;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.renderPool = Executors.newFixedThreadPool(Math.max(1, poolSize), runnable -> {
+            Thread thread = new Thread(runnable, "plantuml-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     @Override
-    public synchronized void plantUml(String uml, String type, String imagesDir, String imageTarget, String nodename, String options) {
+    public CompletableFuture<?> plantUml(String uml, String type, String imagesDir, String imageTarget, String nodename, String options) {
         Objects.requireNonNull(imageTarget);
 
         boolean cachedResource = imageTarget.contains("/afx/cache");
 
         if (!imageTarget.endsWith(".png") && !imageTarget.endsWith(".svg") && !cachedResource)
-            return;
+            return CompletableFuture.completedFuture(null);
 
         StringBuffer stringBuffer = new StringBuffer(uml);
 
@@ -94,58 +120,100 @@ public class PlantUmlServiceImpl implements PlantUmlService {
             uml = uml.replaceFirst("@startditaa", format("@startditaa(%s)", options));
         }
 
-        Integer cacheHit = current.getCache().get(imageTarget);
+        String hash = diagramCacheService.hash("plantuml", imageTarget, type, uml, nodename, options);
 
-        int hashCode = (imageTarget + imagesDir + type + uml + nodename + options).hashCode();
+        // The hash covers only the inline source, included files may have changed since the diagram was stored
+        boolean persistent = !INCLUDE.matcher(uml).find();
 
-        if (nonNull(cacheHit))
-            if (hashCode == cacheHit)
-                return;
-
-        logger.debug("UML extension is started for {}", imageTarget);
+        if (hash.equals(current.getCache().get(imageTarget)))
+            return CompletableFuture.completedFuture(null);
 
         try {
 
             Path path = current.currentTab().getParentOrWorkdir();
             Path umlPath = path.resolve(imageTarget);
 
-            SourceStringReader reader = new SourceStringReader(uml, SFile.fromFile(path.toAbsolutePath().toFile()));
+            if (persistent && diagramCacheService.restore(hash, path, imageTarget)) {
+                current.getCache().put(imageTarget, hash);
+                threadService.runActionLater(() -> {
+                    controller.clearImageCache(umlPath);
+                });
+                return CompletableFuture.completedFuture(null);
+            }
 
             FileFormat fileType = imageTarget.endsWith(".svg") ? FileFormat.SVG : FileFormat.PNG;
+            String source = uml;
+
+            // Identical diagrams requested while one is rendering share its result,
+            // included files are resolved against the folder so it is part of the key
+            String key = persistent ? hash : hash + ":" + path.toAbsolutePath();
+            CompletableFuture<byte[]> rendering = inFlight.computeIfAbsent(key, k -> render(k, source, path, fileType));
+
+            return rendering.whenComplete((bytes, error) -> {
+                if (nonNull(error)) {
+                    if (error instanceof TimeoutException) {
+                        logger.error("UML diagram {} is not rendered in {} seconds", imageTarget, timeout);
+                    } else {
+                        logger.error("Problem occured while generating UML diagram", error);
+                    }
+                    return;
+                }
 
-            ByteArrayOutputStream os = new ByteArrayOutputStream();
-
-            try {
-
-                reader.outputImage(os, new FileFormatOption(fileType));
-
-                if (!cachedResource) {
-                    IOHelper.createDirectories(path.resolve(imagesDir));
-                    IOHelper.writeToFile(umlPath, os.toByteArray(), CREATE, WRITE, TRUNCATE_EXISTING, SYNC);
+                if (persistent) {
+                    diagramCacheService.write(hash, path, imageTarget, bytes);
                 } else {
-                    binaryCacheService.putBinary(imageTarget, os.toByteArray());
+                    diagramCacheService.writeTarget(path, imageTarget, bytes);
                 }
-
-                IOHelper.close(os);
+                current.getCache().put(imageTarget, hash);
 
                 logger.debug("UML extension is ended for {}", imageTarget);
 
                 threadService.runActionLater(() -> {
                     controller.clearImageCache(umlPath);
                 });
-            } catch (Exception e) {
-                logger.error("Problem occured while generating UML diagram", e);
-            } finally {
-                IOHelper.close(os);
-            }
-
-            current.getCache().put(imageTarget, hashCode);
+            });
 
         } catch (Exception e) {
             logger.error("Problem occured while generating UML diagram", e);
+            return CompletableFuture.completedFuture(null);
         }
     }
 
+    private CompletableFuture<byte[]> render(String key, String uml, Path path, FileFormat fileType) {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        CompletableFuture<Void> started = new CompletableFuture<>();
+
+        Future<?> task = renderPool.submit(() -> {
+            started.complete(null);
+            logger.debug("UML rendering is started for {}", key);
+            try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+                SourceStringReader reader = new SourceStringReader(uml, SFile.fromFile(path.toAbsolutePath().toFile()));
+                reader.outputImage(os, new FileFormatOption(fileType));
+                result.complete(os.toByteArray());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+
+        // Diagrams waiting for a pool thread don't time out, the timeout counts from the start of rendering
+        started.thenRun(() -> result.orTimeout(timeout, TimeUnit.SECONDS));
+
+        result.whenComplete((bytes, error) -> {
+            inFlight.remove(key, result);
+            if (error instanceof TimeoutException) {
+                // Interrupts the rendering thread, a running graphviz process is not stopped by it
+                task.cancel(true);
+            }
+        });
+
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renderPool.shutdownNow();
+    }
+
     private String replaceOptionsIfNecessary(String options) {
         options = options.replace("separation=false", "--no-separation");
         options = options.replace("antialias=false", "--no-antialias");
@@ -5,20 +5,25 @@ import com.kodedu.controller.ApplicationController;
 import com.kodedu.helper.IOHelper;
 import com.kodedu.helper.StyleHelper;
 import com.kodedu.other.Current;
+import com.kodedu.other.TreeBuilder;
 import com.kodedu.other.TrimWhite;
 import com.kodedu.other.Tuple;
 import com.kodedu.service.ThreadService;
-import com.kodedu.service.cache.BinaryCacheService;
+import com.kodedu.service.cache.DiagramCacheService;
 import com.kodedu.service.extension.TreeService;
 import com.kodedu.service.ui.AwesomeService;
 import javafx.embed.swing.SwingFXUtils;
-import javafx.scene.Node;
+import javafx.geometry.Bounds;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.SnapshotParameters;
+import javafx.scene.control.Label;
 import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeView;
 import javafx.scene.image.WritableImage;
 import javafx.scene.web.WebView;
 import netscape.javascript.JSObject;
+import org.kordamp.ikonli.Ikon;
+import org.kordamp.ikonli.javafx.FontIcon;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,15 +31,14 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.nio.file.Path;
-import java.util.Arrays;
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  * Created by usta on 25.12.2014.
@@ -49,10 +53,13 @@ public class TreeServiceImpl implements TreeService {
     @Autowired
     private ThreadService threadService;
     @Autowired
-    private BinaryCacheService binaryCacheService;
+    private DiagramCacheService diagramCacheService;
     @Autowired
     private AwesomeService awesomeService;
 
+    private static final int CELL_HEIGHT = 26;
+    private static final int MAX_SNAPSHOT_HEIGHT = 4096;
+
     Pattern pattern = Pattern.compile("^(addw|minw|setw|addh|minh|seth|scale):\\s*(\\d+)$");
 
     @Value("${application.treeview.url}")
@@ -72,122 +79,62 @@ public class TreeServiceImpl implements TreeService {
 
         boolean cachedResource = imageTarget.contains("/afx/cache");
 
-        if (!imageTarget.endsWith(".png") && !cachedResource)
+        if (!imageTarget.endsWith(".png") && !imageTarget.endsWith(".svg") && !cachedResource)
             return;
 
-        Integer cacheHit = current.getCache().get(imageTarget);
-
-        int hashCode = (imageTarget + imagesDir + type + tree).hashCode();
-        if (Objects.isNull(cacheHit) || hashCode != cacheHit) {
+        String hash = diagramCacheService.hash("tree", imageTarget, type, tree);
+        if (!hash.equals(current.getCache().get(imageTarget)) && !restore(hash, imageTarget)) {
 
             logger.debug("Tree extension is started for {}", imageTarget);
 
             try {
-                List<String> strings = Arrays.asList(tree.split("\\r?\\n"));
-
                 Map<String, Integer> settings = newSettings();
+                Map<String, Ikon> iconCodes = new HashMap<>();
+                TreeBuilder<Tuple<Integer, String>> treeBuilder = new TreeBuilder<>();
 
-                List<TreeItem<Tuple<Integer, String>>> treeItems = strings.stream()
-                        .map(s -> {
-
-                            if (s.isEmpty()) {
-                                return null;
-                            }
-
-                            Matcher matcher = pattern.matcher(s);
-                            if (matcher.matches() && matcher.groupCount() == 2) {
-                                String command = matcher.group(1);
-                                String value = matcher.group(2);
-
-                                settings.put(command, Integer.valueOf(value));
-                                return null;
-                            }
-
-                            if (!s.contains("#")) {
-                                return null;
-                            }
-
-                            int level = StringUtils.countOccurrencesOf(s, "#");
-                            String value = s.replace(" ", "").replace("#", "");
-                            return new Tuple<Integer, String>(level, value);
-                        })
-                        .filter(Objects::nonNull)
-                        .map(t -> {
-                            Node icon = awesomeService.getIcon(IOHelper.getPath(t.getValue()));
-                            TreeItem<Tuple<Integer, String>> treeItem = new TreeItem<>(t, icon);
-                            treeItem.setExpanded(true);
-
-                            return treeItem;
-                        })
-                        .collect(Collectors.toList());
-
-                TreeView fileView = getSnaphotTreeView();
-                Integer scale = settings.get("scale");
-
-                if (Objects.isNull(scale)) {
-                    scale = extensionConfigBean.getDefaultImageScale();
-                }
-
-                fileView.setScaleX(scale);
-                fileView.setScaleY(scale);
-
-                for (int index = 0; index < treeItems.size(); index++) {
+                for (String s : tree.split("\\r?\\n")) {
 
-                    TreeItem<Tuple<Integer, String>> currentItem = treeItems.get(index);
-                    Tuple<Integer, String> currentItemValue = currentItem.getValue();
-
-                    if (index == 0) {
-                        fileView.setRoot(currentItem);
+                    if (s.isEmpty()) {
                         continue;
                     }
 
-                    TreeItem<Tuple<Integer, String>> lastItem = treeItems.get(index - 1);
-                    int lastPos = lastItem.getValue().getKey();
-
-                    if (currentItemValue.getKey() > lastPos) {
+                    Matcher matcher = pattern.matcher(s);
+                    if (matcher.matches() && matcher.groupCount() == 2) {
+                        String command = matcher.group(1);
+                        String value = matcher.group(2);
 
-                        lastItem.getChildren().add(currentItem);
+                        settings.put(command, Integer.valueOf(value));
                         continue;
                     }
 
-                    if (currentItemValue.getKey() == lastPos) {
-
-                        TreeItem<Tuple<Integer, String>> parent = lastItem.getParent();
-                        if (Objects.isNull(parent))
-                            parent = fileView.getRoot();
-                        parent.getChildren().add(currentItem);
+                    if (!s.contains("#")) {
                         continue;
                     }
 
-                    if (currentItemValue.getKey() < lastPos) {
-
-                        List<TreeItem<Tuple<Integer, String>>> collect = treeItems.stream()
-                                .filter(t -> t.getValue().getKey() == currentItemValue.getKey())
-                                .collect(Collectors.toList());
+                    int level = StringUtils.countOccurrencesOf(s, "#");
+                    String value = s.replace(" ", "").replace("#", "");
 
-                        if (collect.size() > 0) {
-
-                            TreeItem<Tuple<Integer, String>> parent = fileView.getRoot();
-
-                            try {
-                                TreeItem<Tuple<Integer, String>> treeItem = collect.get(collect.indexOf(currentItem) - 1);
-                                parent = treeItem.getParent();
-                            } catch (RuntimeException e) {
-                                logger.info(e.getMessage(), e);
-                            }
+                    // Icons only differ by file type, so each type is resolved once
+                    Ikon iconCode = iconCodes.computeIfAbsent(iconKey(value),
+                            k -> awesomeService.getIconCode(IOHelper.getPath(value)));
 
-                            if (parent != null) {
-                                parent.getChildren().add(currentItem);
-                            } else {
-                                throw new IllegalStateException("Tree view can't have multiple root parent. Current item: " + currentItemValue.getValue());
-                            }
+                    TreeItem<Tuple<Integer, String>> treeItem = new TreeItem<>(new Tuple<>(level, value), new Label(null, new FontIcon(iconCode)));
+                    treeItem.setExpanded(true);
+                    treeBuilder.add(level, treeItem);
+                }
 
-                        }
-                        continue;
-                    }
+                TreeView fileView = getSnaphotTreeView();
+                Integer scale = settings.get("scale");
 
+                if (Objects.isNull(scale)) {
+                    scale = extensionConfigBean.getDefaultImageScale();
                 }
 
+                fileView.setScaleX(scale);
+                fileView.setScaleY(scale);
+                fileView.setRoot(treeBuilder.getRoot());
+                int itemCount = treeBuilder.size();
+
                 Path path = current.currentTab().getParentOrWorkdir();
 
                 int changeWidth = (settings.get("addw") - settings.get("minw"));
@@ -205,21 +152,15 @@ public class TreeServiceImpl implements TreeService {
                     if (settings.get("seth") > 0) {
                         fileView.setPrefHeight(settings.get("seth"));
                     } else {
-                        fileView.setPrefHeight((treeItems.size() * 26) + 15 + changeHeight);
+                        fileView.setPrefHeight((itemCount * CELL_HEIGHT) + 15 + changeHeight);
                     }
 
-                    WritableImage writableImage = fileView.snapshot(new SnapshotParameters(), null);
-                    BufferedImage bufferedImage = SwingFXUtils.fromFXImage(writableImage, null);
+                    BufferedImage bufferedImage = snapshot(fileView);
 
+                    diagramCacheService.write(hash, path, imageTarget, bufferedImage);
                     if (!cachedResource) {
-
-                        Path treePath = path.resolve(imageTarget);
-                        IOHelper.createDirectories(path.resolve(imagesDir));
-                        IOHelper.imageWrite((BufferedImage) bufferedImage, "png", treePath.toFile());
-                        controller.clearImageCache(treePath);
-
+                        controller.clearImageCache(path.resolve(imageTarget));
                     } else {
-                        binaryCacheService.putBinary(imageTarget, (BufferedImage) bufferedImage);
                         controller.clearImageCache(imageTarget);
                     }
 
@@ -234,12 +175,65 @@ public class TreeServiceImpl implements TreeService {
             }
         }
 
-        current.getCache().put(imageTarget, hashCode);
+        current.getCache().put(imageTarget, hash);
+    }
+
+    // Serves the tree image from the diagram cache instead of rendering it again
+    private boolean restore(String hash, String imageTarget) {
+        Path path = current.currentTab().getParentOrWorkdir();
+        if (!diagramCacheService.restore(hash, path, imageTarget)) {
+            return false;
+        }
+
+        threadService.runActionLater(() -> {
+            if (imageTarget.contains("/afx/cache")) {
+                controller.clearImageCache(imageTarget);
+            } else {
+                controller.clearImageCache(path.resolve(imageTarget));
+            }
+        });
+        return true;
+    }
+
+    private String iconKey(String value) {
+        int dot = value.lastIndexOf('.');
+        // Names without an extension may be folders
+        return dot > 0 ? value.substring(dot).toLowerCase() : value;
+    }
+
+    // Large trees are taken in tiles, a single snapshot can't exceed the maximum texture size
+    private BufferedImage snapshot(TreeView<?> fileView) {
+        fileView.applyCss();
+        fileView.autosize();
+        fileView.layout();
+
+        Bounds bounds = fileView.getBoundsInParent();
+        if (bounds.getHeight() <= MAX_SNAPSHOT_HEIGHT) {
+            WritableImage writableImage = fileView.snapshot(new SnapshotParameters(), null);
+            return SwingFXUtils.fromFXImage(writableImage, null);
+        }
+
+        int width = (int) Math.ceil(bounds.getWidth());
+        int height = (int) Math.ceil(bounds.getHeight());
+        BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = bufferedImage.createGraphics();
+
+        for (int offset = 0; offset < height; offset += MAX_SNAPSHOT_HEIGHT) {
+            SnapshotParameters parameters = new SnapshotParameters();
+            parameters.setViewport(new Rectangle2D(bounds.getMinX(), bounds.getMinY() + offset,
+                    width, Math.min(MAX_SNAPSHOT_HEIGHT, height - offset)));
+            WritableImage tile = fileView.snapshot(parameters, null);
+            graphics.drawImage(SwingFXUtils.fromFXImage(tile, null), 0, offset, null);
+        }
+
+        graphics.dispose();
+        return bufferedImage;
     }
 
     private TreeView getSnaphotTreeView() {
         TreeView fileView = new TreeView();
         StyleHelper.addClass(fileView, "tree-extension");
+        fileView.setFixedCellSize(CELL_HEIGHT);
         fileView.setLayoutX(-14000);
         fileView.setLayoutY(-14000);
         fileView.setMinSize(0, 0);
@@ -252,13 +246,11 @@ public class TreeServiceImpl implements TreeService {
 
         boolean cachedResource = imageTarget.contains("/afx/cache");
 
-        if (!imageTarget.endsWith(".png") && !cachedResource)
+        if (!imageTarget.endsWith(".png") && !imageTarget.endsWith(".svg") && !cachedResource)
             return;
 
-        Integer cacheHit = current.getCache().get(imageTarget);
-
-        int hashCode = (imageTarget + imagesDir + type + tree).hashCode();
-        if (Objects.isNull(cacheHit) || hashCode != cacheHit) {
+        String hash = diagramCacheService.hash("highlight-tree", imageTarget, type, tree);
+        if (!hash.equals(current.getCache().get(imageTarget)) && !restore(hash, imageTarget)) {
 
             Path path = current.currentTab().getParentOrWorkdir();
 
@@ -294,14 +286,10 @@ public class TreeServiceImpl implements TreeService {
                             TrimWhite trimWhite = new TrimWhite();
                             BufferedImage trimmed = trimWhite.trim(bufferedImage);
 
+                            diagramCacheService.write(hash, path, imageTarget, trimmed);
                             if (!cachedResource) {
-
-                                Path treePath = path.resolve(imageTarget);
-                                IOHelper.createDirectories(path.resolve(imagesDir));
-                                IOHelper.imageWrite(trimmed, "png", treePath.toFile());
-                                controller.clearImageCache(treePath);
+                                controller.clearImageCache(path.resolve(imageTarget));
                             } else {
-                                binaryCacheService.putBinary(imageTarget, trimmed);
                                 controller.clearImageCache(imageTarget);
                             }
 
@@ -316,6 +304,6 @@ public class TreeServiceImpl implements TreeService {
 
         }
 
-        current.getCache().put(imageTarget, hashCode);
+        current.getCache().put(imageTarget, hash);
     }
 }
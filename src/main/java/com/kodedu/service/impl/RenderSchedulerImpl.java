@@ -0,0 +1,190 @@
+package com.kodedu.service.impl;
+
+import com.kodedu.controller.TextChangeEvent;
+import com.kodedu.service.RenderScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Debounces renders by the recent render latency, bounded by the configured min and max debounce.
+ * A render is never delayed more than max-delay after the first coalesced event.
+ */
+@Component
+public class RenderSchedulerImpl implements RenderScheduler {
+
+    private final Logger logger = LoggerFactory.getLogger(RenderSchedulerImpl.class);
+
+    private static final int LATENCY_SAMPLES = 64;
+
+    @Value("${application.render.debounce.min}")
+    private long minDebounce;
+
+    @Value("${application.render.debounce.max}")
+    private long maxDebounce;
+
+    @Value("${application.render.max-delay}")
+    private long maxDelay;
+
+    private final Object lock = new Object();
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyCount;
+    private int latencyIndex;
+
+    private TextChangeEvent pendingEvent;
+    private boolean pendingForced;
+    private int pendingCount;
+    private long firstSubmitNanos;
+    private long lastSubmitNanos;
+    private String lastRenderedHash;
+
+    private Thread renderThread;
+
+    @Override
+    public void start(Predicate<TextChangeEvent> renderer) {
+        synchronized (lock) {
+            if (Objects.nonNull(renderThread)) {
+                return;
+            }
+            renderThread = new Thread(() -> renderLoop(renderer), "render-scheduler");
+            renderThread.setDaemon(true);
+            renderThread.start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        synchronized (lock) {
+            if (Objects.nonNull(renderThread)) {
+                renderThread.interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void submit(TextChangeEvent event) {
+        submit(event, false);
+    }
+
+    @Override
+    public void submitForced(TextChangeEvent event) {
+        submit(event, true);
+    }
+
+    private void submit(TextChangeEvent event, boolean forced) {
+        synchronized (lock) {
+            long now = System.nanoTime();
+            if (Objects.isNull(pendingEvent)) {
+                firstSubmitNanos = now;
+            }
+            pendingEvent = event;
+            pendingForced |= forced;
+            pendingCount++;
+            lastSubmitNanos = now;
+            lock.notifyAll();
+        }
+    }
+
+    private void renderLoop(Predicate<TextChangeEvent> renderer) {
+        while (!Thread.currentThread().isInterrupted()) {
+            TextChangeEvent event;
+            boolean forced;
+            int coalesced;
+
+            try {
+                synchronized (lock) {
+                    while (Objects.isNull(pendingEvent)) {
+                        lock.wait();
+                    }
+
+                    long debounce = TimeUnit.MILLISECONDS.toNanos(getDebounceMillis());
+                    long deadline = firstSubmitNanos + TimeUnit.MILLISECONDS.toNanos(maxDelay);
+                    long wait;
+                    while ((wait = Math.min(lastSubmitNanos + debounce, deadline) - System.nanoTime()) > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(lock, wait);
+                    }
+
+                    event = pendingEvent;
+                    forced = pendingForced;
+                    coalesced = pendingCount;
+                    pendingEvent = null;
+                    pendingForced = false;
+                    pendingCount = 0;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            String hash = inputHash(event);
+            if (!forced && hash.equals(lastRenderedHash)) {
+                logger.debug("Skipped render of unchanged content");
+                continue;
+            }
+
+            long start = System.nanoTime();
+            try {
+                // A failed or suppressed render must not keep the same input from rendering later
+                lastRenderedHash = renderer.test(event) ? hash : null;
+            } catch (Exception e) {
+                lastRenderedHash = null;
+                logger.error("Problem occured while rendering content", e);
+            }
+            long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            recordLatency(latency);
+
+            logger.debug("Rendered {} coalesced changes in {} ms, p50: {} ms, p95: {} ms",
+                    coalesced, latency, getLatencyPercentile(50), getLatencyPercentile(95));
+        }
+    }
+
+    private String inputHash(TextChangeEvent event) {
+        String input = event.getMode() + "\n" + event.getPath() + "\n" + event.getText();
+        return DigestUtils.md5DigestAsHex(input.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void recordLatency(long latency) {
+        synchronized (latencies) {
+            latencies[latencyIndex] = latency;
+            latencyIndex = (latencyIndex + 1) % LATENCY_SAMPLES;
+            latencyCount = Math.min(latencyCount + 1, LATENCY_SAMPLES);
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return pendingCount;
+        }
+    }
+
+    @Override
+    public long getDebounceMillis() {
+        // Waiting about as long as a render takes keeps renders from piling up behind typing
+        long median = getLatencyPercentile(50);
+        return Math.max(minDebounce, Math.min(maxDebounce, median));
+    }
+
+    @Override
+    public long getLatencyPercentile(double percentile) {
+        long[] samples;
+        synchronized (latencies) {
+            if (latencyCount == 0) {
+                return 0;
+            }
+            samples = Arrays.copyOf(latencies, latencyCount);
+        }
+        Arrays.sort(samples);
+        int index = (int) Math.ceil(percentile / 100 * samples.length) - 1;
+        return samples[Math.max(0, Math.min(samples.length - 1, index))];
+    }
+}
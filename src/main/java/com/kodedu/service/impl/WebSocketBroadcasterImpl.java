@@ -0,0 +1,201 @@
+package com.kodedu.service.impl;
+
+import com.kodedu.engine.IncrementalResult;
+import com.kodedu.service.ThreadService;
+import com.kodedu.service.WebSocketBroadcaster;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObjectBuilder;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+@Component
+public class WebSocketBroadcasterImpl implements WebSocketBroadcaster {
+
+    private final Logger logger = LoggerFactory.getLogger(WebSocketBroadcasterImpl.class);
+
+    private final ThreadService threadService;
+    private final Map<String, SessionChannel> channels = new ConcurrentHashMap<>();
+
+    @Autowired
+    public WebSocketBroadcasterImpl(ThreadService threadService) {
+        this.threadService = threadService;
+    }
+
+    @Override
+    public void register(WebSocketSession session) {
+        channels.put(session.getId(), new SessionChannel(session));
+    }
+
+    @Override
+    public void unregister(WebSocketSession session) {
+        Optional.ofNullable(channels.remove(session.getId()))
+                .ifPresent(channel -> logger.debug("Live preview session {} closed, sent: {}, dropped: {}",
+                        session.getId(), channel.sentFrames, channel.droppedFrames));
+    }
+
+    @Override
+    public void broadcast(String html) {
+        Frame frame = new Frame(html, null);
+        channels.values().forEach(channel -> channel.offer(frame));
+    }
+
+    @Override
+    public void broadcastBlocks(IncrementalResult result) {
+        Frame frame = new Frame(null, result);
+        channels.values().forEach(channel -> channel.offer(frame));
+    }
+
+    @Override
+    public void send(WebSocketSession session, String html) {
+        Optional.ofNullable(channels.get(session.getId()))
+                .ifPresent(channel -> channel.offer(new Frame(html, null)));
+    }
+
+    @Override
+    public void sendBlocks(WebSocketSession session, IncrementalResult result) {
+        Optional.ofNullable(channels.get(session.getId()))
+                .ifPresent(channel -> {
+                    channel.forgetBlocks();
+                    channel.offer(new Frame(null, result));
+                });
+    }
+
+    @Override
+    public int getSessionCount() {
+        return channels.size();
+    }
+
+    @Override
+    public Map<String, Long> getSessionLags() {
+        Map<String, Long> lags = new HashMap<>();
+        channels.forEach((id, channel) -> lags.put(id, channel.lastLag.get()));
+        return lags;
+    }
+
+    private static class Frame {
+
+        private final long createdAt = System.currentTimeMillis();
+        private final String html;
+        private final IncrementalResult blocks;
+
+        private Frame(String html, IncrementalResult blocks) {
+            this.html = html;
+            this.blocks = blocks;
+        }
+    }
+
+    private class SessionChannel {
+
+        private final WebSocketSession session;
+        private final AtomicReference<Frame> pendingFrame = new AtomicReference<>();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final AtomicBoolean forgetBlocks = new AtomicBoolean();
+        private final AtomicLong lastLag = new AtomicLong();
+        private final LongAdder sentFrames = new LongAdder();
+        private final LongAdder droppedFrames = new LongAdder();
+
+        // Keys of the blocks the browser holds, only accessed by the sending task
+        private final Set<String> knownBlocks = new HashSet<>();
+
+        private SessionChannel(WebSocketSession session) {
+            this.session = session;
+        }
+
+        private void offer(Frame frame) {
+            if (Objects.nonNull(pendingFrame.getAndSet(frame))) {
+                droppedFrames.increment();
+            }
+            drain();
+        }
+
+        private void forgetBlocks() {
+            forgetBlocks.set(true);
+        }
+
+        private void drain() {
+            if (!sending.compareAndSet(false, true)) {
+                return;
+            }
+
+            threadService.executor().execute(() -> {
+                try {
+                    Frame frame;
+                    while (Objects.nonNull(frame = pendingFrame.getAndSet(null))) {
+                        sendFrame(frame);
+                    }
+                } finally {
+                    sending.set(false);
+                    if (Objects.nonNull(pendingFrame.get())) {
+                        drain();
+                    }
+                }
+            });
+        }
+
+        private void sendFrame(Frame frame) {
+            if (!session.isOpen()) {
+                return;
+            }
+
+            if (forgetBlocks.getAndSet(false)) {
+                knownBlocks.clear();
+            }
+
+            try {
+                session.sendMessage(new TextMessage(toMessage(frame)));
+                sentFrames.increment();
+                lastLag.set(System.currentTimeMillis() - frame.createdAt);
+            } catch (Exception e) {
+                knownBlocks.clear();
+                logger.error("Problem occured while sending content over WebSocket", e);
+            }
+        }
+
+        private String toMessage(Frame frame) {
+            if (Objects.isNull(frame.blocks)) {
+                knownBlocks.clear();
+                return Json.createObjectBuilder()
+                        .add("type", "html")
+                        .add("html", frame.html)
+                        .build()
+                        .toString();
+            }
+
+            JsonArrayBuilder order = Json.createArrayBuilder();
+            JsonObjectBuilder contents = Json.createObjectBuilder();
+            Set<String> keys = new HashSet<>();
+
+            for (IncrementalResult.RenderedBlock block : frame.blocks.getBlocks()) {
+                order.add(Json.createObjectBuilder()
+                        .add("key", block.getKey())
+                        .add("offset", block.getOffset()));
+                if (!knownBlocks.contains(block.getKey())) {
+                    contents.add(block.getKey(), block.getHtml());
+                }
+                keys.add(block.getKey());
+            }
+
+            knownBlocks.clear();
+            knownBlocks.addAll(keys);
+
+            return Json.createObjectBuilder()
+                    .add("type", "blocks")
+                    .add("order", order)
+                    .add("contents", contents)
+                    .build()
+                    .toString();
+        }
+    }
+}
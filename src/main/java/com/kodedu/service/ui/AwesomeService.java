@@ -1,6 +1,8 @@
 package com.kodedu.service.ui;
 
 import javafx.scene.Node;
+import org.kordamp.ikonli.Ikon;
+
 import java.nio.file.Path;
 
 /**
@@ -11,4 +13,6 @@ public interface AwesomeService {
     public final static String label = "core::service::ui::AwesomeService";
 
     public Node getIcon(final Path path);
+
+    public Ikon getIconCode(final Path path);
 }
@@ -5,6 +5,7 @@ import com.kodedu.service.ui.AwesomeService;
 
 import javafx.scene.Node;
 import javafx.scene.control.Label;
+import org.kordamp.ikonli.Ikon;
 import org.kordamp.ikonli.fontawesome.FontAwesome;
 import org.kordamp.ikonli.javafx.FontIcon;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,36 +25,41 @@ public class AwesomeServiceImpl implements AwesomeService {
 
     @Override
     public Node getIcon(final Path path) {
+        return new Label(null, new FontIcon(getIconCode(path)));
+    }
+
+    @Override
+    public Ikon getIconCode(final Path path) {
 
-        FontIcon fontIcon = new FontIcon(FontAwesome.FILE_O);
+        Ikon iconCode = FontAwesome.FILE_O;
 
         if (Files.isDirectory(path)) {
-            fontIcon.setIconCode(FontAwesome.FOLDER_O);
+            iconCode = FontAwesome.FOLDER_O;
         } else {
             if (pathResolver.isAsciidoc(path) || pathResolver.isMarkdown(path))
-                fontIcon.setIconCode(FontAwesome.FILE_TEXT_O);
+                iconCode = FontAwesome.FILE_TEXT_O;
             if (pathResolver.isXML(path) || pathResolver.isCode(path))
-                fontIcon.setIconCode(FontAwesome.FILE_CODE_O);
+                iconCode = FontAwesome.FILE_CODE_O;
             if (pathResolver.isImage(path))
-                fontIcon.setIconCode(FontAwesome.FILE_PICTURE_O);
+                iconCode = FontAwesome.FILE_PICTURE_O;
             if (pathResolver.isPDF(path))
-                fontIcon.setIconCode(FontAwesome.FILE_PDF_O);
+                iconCode = FontAwesome.FILE_PDF_O;
             if (pathResolver.isHTML(path))
-                fontIcon.setIconCode(FontAwesome.HTML5);
+                iconCode = FontAwesome.HTML5;
             if (pathResolver.isArchive(path))
-                fontIcon.setIconCode(FontAwesome.FILE_ZIP_O);
+                iconCode = FontAwesome.FILE_ZIP_O;
             if (pathResolver.isExcel(path))
-                fontIcon.setIconCode(FontAwesome.FILE_EXCEL_O);
+                iconCode = FontAwesome.FILE_EXCEL_O;
             if (pathResolver.isVideo(path))
-                fontIcon.setIconCode(FontAwesome.FILE_VIDEO_O);
+                iconCode = FontAwesome.FILE_VIDEO_O;
             if (pathResolver.isWord(path))
-                fontIcon.setIconCode(FontAwesome.FILE_WORD_O);
+                iconCode = FontAwesome.FILE_WORD_O;
             if (pathResolver.isPPT(path))
-                fontIcon.setIconCode(FontAwesome.FILE_POWERPOINT_O);
+                iconCode = FontAwesome.FILE_POWERPOINT_O;
             if (pathResolver.isBash(path))
-                fontIcon.setIconCode(FontAwesome.TERMINAL);
+                iconCode = FontAwesome.TERMINAL;
         }
 
-        return new Label(null, fontIcon);
+        return iconCode;
     }
 }
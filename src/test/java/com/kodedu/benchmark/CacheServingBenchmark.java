@@ -0,0 +1,110 @@
+package com.kodedu.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.kodedu.service.cache.MappedDiskData;
+
+/**
+ * Compares serving a cached diagram from disk through the memory mapped cache data
+ * with the previous RandomAccessFile and 10 KB heap buffer copy loop.
+ * Run with the main method from the test classpath.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheServingBenchmark {
+
+    @Param({"svg", "png"})
+    private String format;
+
+    private Path file;
+    private MappedDiskData cacheData;
+    private RandomAccessFile randomAccessFile;
+    private long length;
+    private final OutputStream output = OutputStream.nullOutputStream();
+    private final WritableByteChannel channel = Channels.newChannel(output);
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] bytes;
+        if ("svg".equals(format)) {
+            // 1 MB of markup, as PlantUML emits for large diagrams
+            String element = "<rect x=\"10\" y=\"20\" width=\"120\" height=\"40\" fill=\"#FEFECE\" style=\"stroke:#A80036;\"/>\n";
+            bytes = element.repeat(1024 * 1024 / element.length()).getBytes(StandardCharsets.UTF_8);
+        } else {
+            // 8 MB of incompressible data, as a large snapshot PNG
+            bytes = new byte[8 * 1024 * 1024];
+            new Random(42).nextBytes(bytes);
+        }
+
+        file = Files.createTempFile("cache-serving", "." + format);
+        Files.write(file, bytes);
+        length = bytes.length;
+        cacheData = new MappedDiskData(file.toString(), file);
+        // Both variants keep their file open across operations
+        randomAccessFile = new RandomAccessFile(file.toFile(), "r");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        randomAccessFile.close();
+        cacheData.removeFromDisk();
+    }
+
+    @Benchmark
+    public long mappedTransfer() throws IOException {
+        return cacheData.transferTo(0, length, channel);
+    }
+
+    @Benchmark
+    public long mappedRangeTransfer() throws IOException {
+        return cacheData.transferTo(length / 2, length / 4, channel);
+    }
+
+    @Benchmark
+    public long heapBufferCopy() throws IOException {
+        byte[] buffer = new byte[10240];
+        long copied = 0;
+        int read;
+        randomAccessFile.seek(0);
+        while ((read = randomAccessFile.read(buffer)) > 0) {
+            output.write(buffer, 0, read);
+            copied += read;
+        }
+        return copied;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CacheServingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,107 @@
+package com.kodedu.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.kodedu.other.ContentFixes;
+
+/**
+ * Compares the single pass extension name scanner with the previous replaceAll chain on 1 MB inputs.
+ * Run with the main method from the test classpath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentFixesBenchmark {
+
+    private static final List<String> extensions = Arrays.asList("stem", "asciimath", "latexmath", "mathml",
+            "math", "plantuml", "uml", "ditaa", "graphviz", "tree", "mermaid");
+
+    private String asciidoc;
+    private String encoded;
+
+    @Setup
+    public void setup() {
+        String sample = String.join("\n",
+                "== Section",
+                "",
+                "A paragraph with stem:[x^2] and latexmath:[\\sqrt{2}] inline formulas.",
+                "",
+                "[plantuml,diagram,png]",
+                "----",
+                "Alice -> Bob",
+                "----",
+                "",
+                "mermaid::flow.mmd[]",
+                "",
+                "Plain text which mentions a tree and some math without any macro.",
+                "");
+
+        StringBuilder builder = new StringBuilder(1024 * 1024 + sample.length());
+        while (builder.length() < 1024 * 1024) {
+            builder.append(sample);
+        }
+
+        asciidoc = builder.toString();
+        encoded = ContentFixes.encodeExtensionNames(asciidoc);
+    }
+
+    @Benchmark
+    public String encodeSinglePass() {
+        return ContentFixes.encodeExtensionNames(asciidoc);
+    }
+
+    @Benchmark
+    public String encodeReplaceAll() {
+        String content = asciidoc;
+        for (String extension : extensions) {
+            content = replaceAll(content, extension, extension.toUpperCase());
+        }
+        return content;
+    }
+
+    @Benchmark
+    public String decodeSinglePass() {
+        return ContentFixes.decodeExtensionNames(encoded);
+    }
+
+    @Benchmark
+    public String decodeReplaceAll() {
+        String content = encoded;
+        for (String extension : extensions) {
+            content = replaceAll(content, extension.toUpperCase(), extension);
+        }
+        return content;
+    }
+
+    private static String replaceAll(String content, String extension, String replacement) {
+        content = content.replaceAll("\\[" + extension, "[" + replacement);
+        content = content.replaceAll(extension + "::", replacement + "::");
+        content = content.replaceAll(extension + ":\\[", replacement + ":[");
+        return content;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ContentFixesBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
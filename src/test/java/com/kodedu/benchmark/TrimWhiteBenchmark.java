@@ -0,0 +1,117 @@
+package com.kodedu.benchmark;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.kodedu.other.TrimWhite;
+
+/**
+ * Compares the raster scanning trim with the previous getRGB per pixel trim on 4K snapshots,
+ * a small formula in the corner and a diagram covering most of the image.
+ * Run with the main method from the test classpath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrimWhiteBenchmark {
+
+    @Param({"formula", "diagram"})
+    private String content;
+
+    private BufferedImage snapshot;
+    private final TrimWhite trimWhite = new TrimWhite();
+
+    @Setup
+    public void setup() {
+        snapshot = new BufferedImage(3840, 2160, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D graphics = snapshot.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, snapshot.getWidth(), snapshot.getHeight());
+        graphics.setColor(Color.BLACK);
+        if ("formula".equals(content)) {
+            graphics.drawString("x = (-b + sqrt(b^2 - 4ac)) / 2a", 20, 40);
+        } else {
+            graphics.drawRect(200, 150, 3000, 1800);
+            graphics.drawLine(200, 150, 3200, 1950);
+        }
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage rasterTrim() {
+        return trimWhite.trim(snapshot);
+    }
+
+    @Benchmark
+    public BufferedImage getRgbTrim() {
+        int width = getTrimmedWidth(snapshot) + 5;
+        int height = getTrimmedHeight(snapshot) + 5;
+
+        BufferedImage newImg = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics g = newImg.createGraphics();
+        g.drawImage(snapshot, 0, 0, null);
+        g.dispose();
+        return newImg;
+    }
+
+    private int getTrimmedWidth(BufferedImage img) {
+        int height = img.getHeight();
+        int width = img.getWidth();
+        int trimmedWidth = 0;
+
+        for (int i = 0; i < height; i++) {
+            for (int j = width - 1; j >= 0; j--) {
+                if (img.getRGB(j, i) != Color.WHITE.getRGB() &&
+                        j > trimmedWidth) {
+                    trimmedWidth = j;
+                    break;
+                }
+            }
+        }
+
+        return trimmedWidth;
+    }
+
+    private int getTrimmedHeight(BufferedImage img) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        int trimmedHeight = 0;
+
+        for (int i = 0; i < width; i++) {
+            for (int j = height - 1; j >= 0; j--) {
+                if (img.getRGB(i, j) != Color.WHITE.getRGB() &&
+                        j > trimmedHeight) {
+                    trimmedHeight = j;
+                    break;
+                }
+            }
+        }
+
+        return trimmedHeight;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TrimWhiteBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
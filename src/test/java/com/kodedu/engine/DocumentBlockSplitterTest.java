@@ -0,0 +1,79 @@
+package com.kodedu.engine;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class DocumentBlockSplitterTest {
+
+    /**
+     * Splitter object being tested
+     */
+    private final DocumentBlockSplitter splitter = new DocumentBlockSplitter();
+
+    @Test
+    public void testSplitSections() {
+        String text = String.join("\n",
+                "= Title",
+                ":icons: font",
+                "",
+                "Preamble",
+                "",
+                "[[first]]",
+                "== First",
+                "",
+                "----",
+                "== Not a section",
+                "----",
+                "",
+                ":foo: bar",
+                "",
+                "[discrete]",
+                "== Discrete",
+                "",
+                "== Second",
+                "");
+
+        List<DocumentBlock> blocks = splitter.split(text);
+
+        Assertions.assertEquals(4, blocks.size());
+        Assertions.assertEquals(DocumentBlock.Type.HEADER, blocks.get(0).getType());
+        Assertions.assertEquals(List.of(":icons: font"), blocks.get(0).getAttributeEntries());
+        Assertions.assertEquals(DocumentBlock.Type.PREAMBLE, blocks.get(1).getType());
+        Assertions.assertEquals(4, blocks.get(1).getStartLine());
+        Assertions.assertEquals(DocumentBlock.Type.SECTION, blocks.get(2).getType());
+        Assertions.assertEquals(6, blocks.get(2).getStartLine());
+        Assertions.assertEquals(List.of(":foo: bar"), blocks.get(2).getAttributeEntries());
+        Assertions.assertEquals("== Second", blocks.get(3).getText());
+        Assertions.assertEquals(18, blocks.get(3).getStartLine());
+    }
+
+    @Test
+    public void testSplitParagraphs() {
+        String text = String.join("\n",
+                "First paragraph",
+                "",
+                "* item",
+                "",
+                "* other item",
+                "+",
+                "attached",
+                "",
+                "....",
+                "",
+                "literal",
+                "....",
+                "",
+                "Last paragraph");
+
+        List<DocumentBlock> blocks = splitter.split(text);
+
+        Assertions.assertEquals(4, blocks.size());
+        Assertions.assertEquals("First paragraph", blocks.get(0).getText());
+        Assertions.assertEquals(3, blocks.get(1).getStartLine());
+        Assertions.assertEquals(9, blocks.get(2).getStartLine());
+        Assertions.assertEquals("....\n\nliteral\n....", blocks.get(2).getText());
+        Assertions.assertEquals(DocumentBlock.Type.BLOCK, blocks.get(3).getType());
+    }
+}
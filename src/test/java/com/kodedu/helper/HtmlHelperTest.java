@@ -0,0 +1,42 @@
+package com.kodedu.helper;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class HtmlHelperTest {
+
+    @Test
+    public void testSplitTopLevelElements() {
+        String html = "<div class=\"paragraph\"><p>a<br>b</p></div>\n<!-- note -->\n<hr/>\n<img src=\"x.png\">";
+
+        Assertions.assertEquals(List.of("<div class=\"paragraph\"><p>a<br>b</p></div>", "<hr/>", "<img src=\"x.png\">"),
+                HtmlHelper.splitTopLevelElements(html));
+    }
+
+    @Test
+    public void testQuotedGreaterThan() {
+        String html = "<div title=\"a > b\" data-x='<p>'><span>x</span></div><p>y</p>";
+
+        Assertions.assertEquals(List.of("<div title=\"a > b\" data-x='<p>'><span>x</span></div>", "<p>y</p>"),
+                HtmlHelper.splitTopLevelElements(html));
+    }
+
+    @Test
+    public void testRawTextElements() {
+        String html = "<SCRIPT>if (a </b) { x = '<div>'; }</Script><style>p > a {}</style>";
+
+        Assertions.assertEquals(List.of("<SCRIPT>if (a </b) { x = '<div>'; }</Script>", "<style>p > a {}</style>"),
+                HtmlHelper.splitTopLevelElements(html));
+    }
+
+    @Test
+    public void testUnsplittable() {
+        Assertions.assertNull(HtmlHelper.splitTopLevelElements("text <p>a</p>"));
+        Assertions.assertNull(HtmlHelper.splitTopLevelElements("<div><p>a</p>"));
+        Assertions.assertNull(HtmlHelper.splitTopLevelElements("<p>a</p></div>"));
+        Assertions.assertNull(HtmlHelper.splitTopLevelElements("<script>never closed"));
+        Assertions.assertNull(HtmlHelper.splitTopLevelElements("<p title=\"a>"));
+    }
+}
@@ -0,0 +1,25 @@
+package com.kodedu.other;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ContentFixesTest {
+
+    @Test
+    public void testEncodeExtensionNames() {
+        Assertions.assertEquals("[PLANTUML,file.png]", ContentFixes.encodeExtensionNames("[plantuml,file.png]"));
+        Assertions.assertEquals("MERMAID::flow.mmd[]", ContentFixes.encodeExtensionNames("mermaid::flow.mmd[]"));
+        Assertions.assertEquals("STEM:[x] and LATEXMATH:[y]", ContentFixes.encodeExtensionNames("stem:[x] and latexmath:[y]"));
+        Assertions.assertEquals("[MATHML] [MATH]", ContentFixes.encodeExtensionNames("[mathml] [math]"));
+        Assertions.assertEquals("a tree: and math", ContentFixes.encodeExtensionNames("a tree: and math"));
+    }
+
+    @Test
+    public void testDecodeExtensionNames() {
+        String asciidoc = "[uml]\n----\nA -> B\n----\n\nasciimath:[x] graphviz::dot.gv[] [TREE]";
+        String encoded = ContentFixes.encodeExtensionNames(asciidoc);
+
+        Assertions.assertEquals("[UML]\n----\nA -> B\n----\n\nASCIIMATH:[x] GRAPHVIZ::dot.gv[] [TREE]", encoded);
+        Assertions.assertEquals("[uml]\n----\nA -> B\n----\n\nasciimath:[x] graphviz::dot.gv[] [tree]", ContentFixes.decodeExtensionNames(encoded));
+    }
+}
@@ -0,0 +1,60 @@
+package com.kodedu.other;
+
+import javafx.scene.control.TreeItem;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TreeBuilderTest {
+
+    @Test
+    public void testNesting() {
+        TreeBuilder<String> builder = new TreeBuilder<>();
+        builder.add(1, new TreeItem<>("root"));
+        builder.add(2, new TreeItem<>("src"));
+        builder.add(3, new TreeItem<>("main"));
+        builder.add(4, new TreeItem<>("App.java"));
+        builder.add(3, new TreeItem<>("test"));
+        builder.add(2, new TreeItem<>("pom.xml"));
+
+        TreeItem<String> root = builder.getRoot();
+        Assertions.assertEquals("root", root.getValue());
+        Assertions.assertEquals(2, root.getChildren().size());
+
+        TreeItem<String> src = root.getChildren().get(0);
+        Assertions.assertEquals("src", src.getValue());
+        Assertions.assertEquals("main", src.getChildren().get(0).getValue());
+        Assertions.assertEquals("App.java", src.getChildren().get(0).getChildren().get(0).getValue());
+        Assertions.assertEquals("test", src.getChildren().get(1).getValue());
+        Assertions.assertEquals("pom.xml", root.getChildren().get(1).getValue());
+        Assertions.assertEquals(6, builder.size());
+    }
+
+    @Test
+    public void testSkippedAndUnknownLevels() {
+        TreeBuilder<String> builder = new TreeBuilder<>();
+        builder.add(1, new TreeItem<>("root"));
+        builder.add(3, new TreeItem<>("deep"));
+        builder.add(2, new TreeItem<>("middle"));
+        builder.add(1, new TreeItem<>("sibling"));
+
+        TreeItem<String> root = builder.getRoot();
+        Assertions.assertEquals(3, root.getChildren().size());
+        Assertions.assertEquals("deep", root.getChildren().get(0).getValue());
+        Assertions.assertEquals("middle", root.getChildren().get(1).getValue());
+        Assertions.assertEquals("sibling", root.getChildren().get(2).getValue());
+    }
+
+    @Test
+    public void testLargeTree() {
+        TreeBuilder<Integer> builder = new TreeBuilder<>();
+        builder.add(1, new TreeItem<>(0));
+        for (int i = 0; i < 99_999; i++) {
+            builder.add(2 + i % 3, new TreeItem<>(i));
+        }
+
+        Assertions.assertEquals(100_000, builder.size());
+        Assertions.assertEquals(33_333, builder.getRoot().getChildren().size());
+        Assertions.assertEquals(1, builder.getRoot().getChildren().get(0).getChildren().size());
+    }
+}
@@ -0,0 +1,83 @@
+package com.kodedu.other;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TrimWhiteTest {
+
+    private final TrimWhite trimWhite = new TrimWhite();
+
+    @Test
+    public void testBoundsOfRasterTypes() {
+        int[] types = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_ARGB_PRE,
+                BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY,
+                BufferedImage.TYPE_USHORT_565_RGB};
+
+        for (int type : types) {
+            BufferedImage image = image(type, 300, 200);
+            fill(image, Color.BLACK, 40, 30, 10, 5);
+            fill(image, Color.BLACK, 250, 150, 3, 20);
+
+            Assertions.assertEquals(new Rectangle(40, 30, 213, 140), trimWhite.bounds(image), "type " + type);
+        }
+    }
+
+    @Test
+    public void testBoundsOfBlankImage() {
+        BufferedImage image = image(BufferedImage.TYPE_INT_ARGB, 100, 100);
+
+        Assertions.assertNull(trimWhite.bounds(image));
+        Assertions.assertTrue(trimWhite.isBlank(image));
+    }
+
+    @Test
+    public void testBoundsOfSubimage() {
+        BufferedImage image = image(BufferedImage.TYPE_INT_ARGB, 200, 200);
+        fill(image, Color.BLACK, 10, 10, 5, 5);
+        fill(image, Color.RED, 120, 130, 4, 2);
+
+        Assertions.assertEquals(new Rectangle(20, 30, 4, 2), trimWhite.bounds(image.getSubimage(100, 100, 50, 50)));
+    }
+
+    @Test
+    public void testBoundsAcrossBands() {
+        // Tall enough to be scanned in parallel bands
+        BufferedImage image = image(BufferedImage.TYPE_INT_RGB, 1000, 3000);
+        fill(image, Color.BLUE, 500, 700, 1, 1);
+        fill(image, Color.BLUE, 3, 2100, 1, 1);
+        fill(image, Color.BLUE, 990, 2999, 1, 1);
+
+        Assertions.assertEquals(new Rectangle(3, 700, 988, 2300), trimWhite.bounds(image));
+    }
+
+    @Test
+    public void testTrimKeepsPadding() {
+        BufferedImage image = image(BufferedImage.TYPE_INT_ARGB, 300, 200);
+        fill(image, Color.BLACK, 40, 30, 10, 5);
+
+        BufferedImage trimmed = trimWhite.trim(image);
+
+        Assertions.assertEquals(20, trimmed.getWidth());
+        Assertions.assertEquals(15, trimmed.getHeight());
+        Assertions.assertEquals(Color.WHITE.getRGB(), trimmed.getRGB(4, 4));
+        Assertions.assertEquals(Color.BLACK.getRGB(), trimmed.getRGB(5, 5));
+        Assertions.assertEquals(Color.BLACK.getRGB(), trimmed.getRGB(14, 9));
+        Assertions.assertEquals(Color.WHITE.getRGB(), trimmed.getRGB(15, 10));
+    }
+
+    private BufferedImage image(int type, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        fill(image, Color.WHITE, 0, 0, width, height);
+        return image;
+    }
+
+    private void fill(BufferedImage image, Color color, int x, int y, int width, int height) {
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(x, y, width, height);
+        graphics.dispose();
+    }
+}
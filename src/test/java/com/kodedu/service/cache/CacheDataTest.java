@@ -0,0 +1,171 @@
+package com.kodedu.service.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class CacheDataTest {
+
+    private static final int SIZE = 64 * 1024;
+
+    @Test
+    public void testConcurrentReadsInMemory() throws Exception {
+        assertConcurrentReads(new InMemoryDAta("memory", bytes()));
+    }
+
+    @Test
+    public void testConcurrentReadsMapped() throws Exception {
+        Path file = Files.createTempFile("cache-data", ".png");
+        Files.write(file, bytes());
+        MappedDiskData cacheData = new MappedDiskData("mapped", file);
+        try {
+            assertConcurrentReads(cacheData);
+        } finally {
+            cacheData.removeFromDisk();
+        }
+    }
+
+    @Test
+    public void testMappedRemovedWhileRead() throws Exception {
+        Path file = Files.createTempFile("cache-data", ".png");
+        Files.write(file, bytes());
+        MappedDiskData cacheData = new MappedDiskData("mapped", file);
+
+        // Evicted while a response is being written
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        WritableByteChannel target = Channels.newChannel(output);
+        cacheData.transferTo(0, SIZE, new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                cacheData.removeFromDisk();
+                Assertions.assertTrue(Files.exists(file));
+                return target.write(src);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        Assertions.assertArrayEquals(bytes(), output.toByteArray());
+        Assertions.assertFalse(Files.exists(file));
+        Assertions.assertEquals(-1, cacheData.read(0, new byte[10], 0, 10));
+        Assertions.assertEquals(0, cacheData.readBytes().length);
+    }
+
+    @Test
+    public void testPinnedBeforeEviction() throws Exception {
+        Path file = Files.createTempFile("cache-data", ".png");
+        Files.write(file, bytes());
+        SlabAllocator allocator = new SlabAllocator(SIZE, SIZE, 4096);
+        List<CacheData> entries = List.of(new MappedDiskData("mapped", file),
+                new OffHeapData("off-heap", allocator.allocate(bytes()), SIZE, allocator));
+
+        // Evicted between the lookup of a response and its first read
+        for (CacheData cacheData : entries) {
+            cacheData.pin();
+            cacheData.removeFromDisk();
+            cacheData.release();
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            cacheData.transferTo(0, SIZE, Channels.newChannel(output));
+            Assertions.assertArrayEquals(bytes(), output.toByteArray());
+
+            cacheData.unpin();
+        }
+
+        Assertions.assertFalse(Files.exists(file));
+        Assertions.assertEquals(0, allocator.getUsed());
+    }
+
+    @Test
+    public void testConcurrentReadsOffHeap() throws Exception {
+        SlabAllocator allocator = new SlabAllocator(256 * 1024, 128 * 1024, 4096);
+        OffHeapData cacheData = new OffHeapData("off-heap", allocator.allocate(bytes()), SIZE, allocator);
+
+        assertConcurrentReads(cacheData);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        cacheData.transferTo(4000, 5000, Channels.newChannel(output));
+        Assertions.assertArrayEquals(Arrays.copyOfRange(bytes(), 4000, 9000), output.toByteArray());
+    }
+
+    @Test
+    public void testOffHeapRelease() {
+        SlabAllocator allocator = new SlabAllocator(SIZE, SIZE, 4096);
+        OffHeapData cacheData = new OffHeapData("off-heap", allocator.allocate(bytes()), SIZE, allocator);
+
+        Assertions.assertNull(allocator.allocate(new byte[1]));
+        cacheData.release();
+        Assertions.assertEquals(0, allocator.getUsed());
+        Assertions.assertNotNull(allocator.allocate(bytes()));
+    }
+
+    @Test
+    public void testTransferRange() throws Exception {
+        InMemoryDAta cacheData = new InMemoryDAta("memory", bytes());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        cacheData.transferTo(100, 50, Channels.newChannel(output));
+
+        Assertions.assertArrayEquals(Arrays.copyOfRange(bytes(), 100, 150), output.toByteArray());
+    }
+
+    private void assertConcurrentReads(CacheData cacheData) throws Exception {
+        byte[] expected = bytes();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<byte[]>> readers = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                long start = i * 1024L;
+                readers.add(() -> readFrom(cacheData, start));
+            }
+
+            List<Future<byte[]>> results = executor.invokeAll(readers);
+            for (int i = 0; i < results.size(); i++) {
+                Assertions.assertArrayEquals(Arrays.copyOfRange(expected, i * 1024, SIZE), results.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private byte[] readFrom(CacheData cacheData, long start) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[100];
+        long position = start;
+        int read;
+        while ((read = cacheData.read(position, buffer, 0, buffer.length)) > 0) {
+            output.write(buffer, 0, read);
+            position += read;
+        }
+        return output.toByteArray();
+    }
+
+    private byte[] bytes() {
+        byte[] bytes = new byte[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        return bytes;
+    }
+}
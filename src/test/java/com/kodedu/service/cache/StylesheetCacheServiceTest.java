@@ -0,0 +1,71 @@
+package com.kodedu.service.cache;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.kodedu.service.cache.impl.StylesheetCacheServiceImpl;
+
+public class StylesheetCacheServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private Path stylesheet;
+    private Path imported;
+    private StylesheetCacheService stylesheetCacheService;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        stylesheet = dir.resolve("main.xsl");
+        imported = dir.resolve("common/text.xsl");
+        Files.createDirectories(imported.getParent());
+
+        Files.writeString(stylesheet, "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">" +
+                "<xsl:import href=\"common/text.xsl\"/><xsl:output method=\"text\"/></xsl:stylesheet>");
+        writeImported("first");
+
+        stylesheetCacheService = new StylesheetCacheServiceImpl(null, false);
+    }
+
+    @Test
+    public void testSharedTemplates() throws Exception {
+        Templates templates = stylesheetCacheService.getTemplates(stylesheet);
+
+        Assertions.assertSame(templates, stylesheetCacheService.getTemplates(dir.resolve("common/../main.xsl")));
+        Assertions.assertEquals("first", transform());
+    }
+
+    @Test
+    public void testImportChanged() throws Exception {
+        Templates templates = stylesheetCacheService.getTemplates(stylesheet);
+
+        writeImported("second");
+        Files.setLastModifiedTime(imported, FileTime.fromMillis(Files.getLastModifiedTime(imported).toMillis() + 2000));
+
+        Assertions.assertNotSame(templates, stylesheetCacheService.getTemplates(stylesheet));
+        Assertions.assertEquals("second", transform());
+    }
+
+    private void writeImported(String text) throws Exception {
+        Files.writeString(imported, "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">" +
+                "<xsl:template match=\"/\">" + text + "</xsl:template></xsl:stylesheet>");
+    }
+
+    private String transform() throws Exception {
+        StringWriter writer = new StringWriter();
+        stylesheetCacheService.newTransformer(stylesheet).transform(new StreamSource(new StringReader("<doc/>")), new StreamResult(writer));
+        return writer.toString();
+    }
+}
@@ -0,0 +1,48 @@
+package com.kodedu.service.convert.docbook;
+
+import java.io.StringReader;
+
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.sax.SAXSource;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.xml.sax.InputSource;
+
+import com.kodedu.helper.XMLHelper;
+
+public class DocbookFixupFilterTest {
+
+    @Test
+    public void testFigureImagesCentered() throws Exception {
+        String result = filter("<book xmlns=\"http://docbook.org/ns/docbook\">" +
+                "<figure><mediaobject><imageobject><imagedata fileref=\"a.png\" align=\"left\"/></imageobject></mediaobject></figure>" +
+                "<informalfigure><imagedata fileref=\"b.png\"/></informalfigure>" +
+                "<imagedata fileref=\"c.png\"/>" +
+                "</book>");
+
+        Assertions.assertTrue(result.contains("<imagedata fileref=\"a.png\" align=\"center\"/>"), result);
+        Assertions.assertTrue(result.contains("<imagedata fileref=\"b.png\"/>"), result);
+        Assertions.assertTrue(result.contains("<imagedata fileref=\"c.png\"/>"), result);
+    }
+
+    @Test
+    public void testCalloutKeepsLastRef() throws Exception {
+        String result = filter("<book xmlns=\"http://docbook.org/ns/docbook\"><calloutlist>" +
+                "<callout arearefs=\"CO1-1 CO2-1\"><para>one</para></callout>" +
+                "<callout arearefs=\"CO1-2\"><para>two</para></callout>" +
+                "<callout><para>three</para></callout>" +
+                "</calloutlist></book>");
+
+        Assertions.assertTrue(result.contains("<callout arearefs=\"CO2-1\">"), result);
+        Assertions.assertTrue(result.contains("<callout arearefs=\"CO1-2\">"), result);
+        Assertions.assertTrue(result.contains("<callout><para>three</para>"), result);
+    }
+
+    private String filter(String docbook) throws Exception {
+        SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+        parserFactory.setNamespaceAware(true);
+        DocbookFixupFilter filter = new DocbookFixupFilter(parserFactory.newSAXParser().getXMLReader());
+        return XMLHelper.sourceToString(new SAXSource(filter, new InputSource(new StringReader(docbook))), true);
+    }
+}
@@ -0,0 +1,85 @@
+package com.kodedu.service.extension.chart;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ChartSeriesTest {
+
+    @Test
+    public void testReadSeries() {
+        String content = "a,1\n" +
+                "b,2,#f00\n" +
+                "//empty\n" +
+                "//second\n" +
+                "skipped\n" +
+                "c,3\n";
+
+        List<ChartSeries> seriesList = ChartSeriesReader.read(content);
+
+        Assertions.assertEquals(2, seriesList.size());
+        Assertions.assertNull(seriesList.get(0).getName());
+        Assertions.assertEquals(2, seriesList.get(0).getRows().size());
+        Assertions.assertEquals("#f00", seriesList.get(0).getRows().get(1)[2]);
+        Assertions.assertEquals("second", seriesList.get(1).getName());
+        Assertions.assertEquals("c", seriesList.get(1).getRows().get(0)[0]);
+
+        Assertions.assertEquals("a,1\nb,2,#f00\n//second\nc,3\n", ChartSeries.format(seriesList));
+    }
+
+    @Test
+    public void testLttbKeepsShape() {
+        List<String[]> rows = wave(200_000);
+
+        List<String[]> sampled = ChartDownsampler.lttb(rows, 800);
+
+        Assertions.assertEquals(800, sampled.size());
+        Assertions.assertSame(rows.get(0), sampled.get(0));
+        Assertions.assertSame(rows.get(rows.size() - 1), sampled.get(sampled.size() - 1));
+        Assertions.assertTrue(sampled.stream().anyMatch(row -> row[1].equals("1000.0")));
+        assertOrdered(sampled);
+    }
+
+    @Test
+    public void testMinMaxKeepsExtremes() {
+        List<String[]> rows = wave(200_000);
+
+        List<String[]> sampled = ChartDownsampler.minMax(rows, 800);
+
+        Assertions.assertTrue(sampled.size() <= 800);
+        Assertions.assertTrue(sampled.stream().anyMatch(row -> row[1].equals("1000.0")));
+        Assertions.assertTrue(sampled.stream().anyMatch(row -> row[1].equals("-1.0")));
+        assertOrdered(sampled);
+    }
+
+    @Test
+    public void testSmallOrNonNumericSeries() {
+        List<String[]> rows = wave(100);
+        Assertions.assertSame(rows, ChartDownsampler.lttb(rows, 800));
+
+        List<String[]> categories = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            categories.add(new String[]{"x" + i, "value" + i});
+        }
+        Assertions.assertSame(categories, ChartDownsampler.lttb(categories, 100));
+        Assertions.assertSame(categories, ChartDownsampler.minMax(categories, 100));
+    }
+
+    // A flat series with one spike and one dip which must survive sampling
+    private List<String[]> wave(int size) {
+        List<String[]> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            double y = i == size / 3 ? 1000 : i == size / 2 ? -1 : i % 2;
+            rows.add(new String[]{String.valueOf(i), String.valueOf(y)});
+        }
+        return rows;
+    }
+
+    private void assertOrdered(List<String[]> rows) {
+        for (int i = 1; i < rows.size(); i++) {
+            Assertions.assertTrue(Double.parseDouble(rows.get(i - 1)[0]) < Double.parseDouble(rows.get(i)[0]));
+        }
+    }
+}
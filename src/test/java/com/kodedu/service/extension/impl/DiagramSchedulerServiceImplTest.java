@@ -0,0 +1,125 @@
+package com.kodedu.service.extension.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import com.kodedu.service.ThreadService;
+
+public class DiagramSchedulerServiceImplTest {
+
+    private final List<String> started = new ArrayList<>();
+    private final List<CompletableFuture<Void>> renders = new ArrayList<>();
+    private ThreadService threadService;
+    private DiagramSchedulerServiceImpl scheduler;
+
+    @BeforeEach
+    public void setup() {
+        threadService = Mockito.mock(ThreadService.class);
+        Mockito.when(threadService.runTaskLater(Mockito.any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        });
+        scheduler = new DiagramSchedulerServiceImpl(threadService, Map.of("plantuml", 1, "mermaid", 1), 60);
+    }
+
+    @Test
+    public void testViewportOrder() {
+        schedule("plantuml", "busy.png", 1);
+        scheduler.updateViewport(280, 320, 300);
+
+        schedule("plantuml", "below.png", 500);
+        schedule("plantuml", "above.png", 20);
+        schedule("plantuml", "cursor.png", 300);
+        schedule("plantuml", "view.png", 285);
+
+        completeAll();
+
+        Assertions.assertEquals(List.of("busy.png", "cursor.png", "view.png", "below.png", "above.png"), started);
+    }
+
+    @Test
+    public void testReprioritiseOnScroll() {
+        schedule("plantuml", "busy.png", 1);
+        schedule("plantuml", "first.png", 10);
+        schedule("plantuml", "last.png", 900);
+
+        scheduler.updateViewport(880, 920, 900);
+        completeAll();
+
+        Assertions.assertEquals(List.of("busy.png", "last.png", "first.png"), started);
+    }
+
+    @Test
+    public void testLimitPerType() {
+        schedule("plantuml", "uml1.png", 1);
+        schedule("plantuml", "uml2.png", 2);
+        schedule("mermaid", "mermaid.png", 3);
+
+        Assertions.assertEquals(List.of("uml1.png", "mermaid.png"), started);
+    }
+
+    @Test
+    public void testDeduplicate() {
+        schedule("plantuml", "busy.png", 1);
+        schedule("plantuml", "busy.png", 1);
+        schedule("plantuml", "queued.png", 2, "old");
+        schedule("plantuml", "queued.png", 2, "new");
+
+        completeAll();
+
+        Assertions.assertEquals(List.of("busy.png", "queued.png:new"), started);
+    }
+
+    @Test
+    public void testParkWhileInFlight() {
+        scheduler = new DiagramSchedulerServiceImpl(threadService, Map.of("plantuml", 2), 60);
+
+        schedule("plantuml", "uml.png", 1, "old");
+        schedule("plantuml", "uml.png", 1, "new");
+        schedule("plantuml", "other.png", 2);
+
+        Assertions.assertEquals(List.of("uml.png:old", "other.png"), started);
+
+        renders.get(0).complete(null);
+
+        Assertions.assertEquals(List.of("uml.png:old", "other.png", "uml.png:new"), started);
+    }
+
+    @Test
+    public void testRevertWhileInFlight() {
+        schedule("plantuml", "uml.png", 1, "old");
+        schedule("plantuml", "uml.png", 1, "new");
+        schedule("plantuml", "uml.png", 1, "old");
+
+        completeAll();
+
+        Assertions.assertEquals(List.of("uml.png:old"), started);
+    }
+
+    private void schedule(String type, String imageTarget, int line) {
+        schedule(type, imageTarget, line, imageTarget);
+    }
+
+    private void schedule(String type, String imageTarget, int line, String hash) {
+        String name = hash.equals(imageTarget) ? imageTarget : imageTarget + ":" + hash;
+        scheduler.schedule(type, imageTarget, hash, line, () -> {
+            started.add(name);
+            CompletableFuture<Void> render = new CompletableFuture<>();
+            renders.add(render);
+            return render;
+        });
+    }
+
+    private void completeAll() {
+        for (int i = 0; i < renders.size(); i++) {
+            renders.get(i).complete(null);
+        }
+    }
+}